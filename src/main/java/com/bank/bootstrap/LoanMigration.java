@@ -0,0 +1,128 @@
+package com.bank.bootstrap;
+
+import com.mongodb.DBRef;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Configuration
+public class LoanMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanMigration.class);
+    private static final int BATCH = 500;
+
+    // Loans used to hold a DBRef to users; rewrite them to userId plus an applicant summary, one $in per batch
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public CommandLineRunner migrateLoanUsers(MongoTemplate mongoTemplate) {
+        return args -> {
+            MongoCollection<Document> loans = mongoTemplate.getCollection("loans");
+            MongoCollection<Document> users = mongoTemplate.getCollection("users");
+            int migrated = 0;
+            List<Document> batch = new ArrayList<>(BATCH);
+            for (Document loan : loans.find(Filters.exists("user")).projection(Projections.include("user"))) {
+                batch.add(loan);
+                if (batch.size() == BATCH) {
+                    migrated += migrate(loans, users, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) migrated += migrate(loans, users, batch);
+            if (migrated > 0) log.info("Migrated {} loans from user DBRefs to userId", migrated);
+
+            // The state machine only moves loans out of PENDING by an exact status match
+            loans.updateMany(Filters.eq("status", null), Updates.set("status", "PENDING"));
+
+            // Before the state machine an approval also paid out, so versionless APPROVED loans are disbursed
+            loans.updateMany(Filters.and(Filters.eq("status", "APPROVED"), Filters.exists("version", false)),
+                    List.of(new Document("$set", new Document("status", "DISBURSED")
+                            .append("disbursementDate", "$approvalDate"))));
+            // Disbursed loans accrue on their outstanding principal, which starts at the full amount;
+            // MoneyMigration has already made amount Int64 minor units
+            loans.updateMany(Filters.and(Filters.eq("status", "DISBURSED"), Filters.exists("outstandingPrincipal", false)),
+                    List.of(new Document("$set", new Document("outstandingPrincipal", "$amount"))));
+            // Installments fall monthly on the disbursement day; legacy loans start at the one after today
+            List<Document> undated = new ArrayList<>(BATCH);
+            for (Document loan : loans.find(Filters.and(Filters.eq("status", "DISBURSED"), Filters.exists("nextDueDate", false),
+                    Filters.type("disbursementDate", BsonType.DATE_TIME))).projection(Projections.include("disbursementDate"))) {
+                undated.add(loan);
+                if (undated.size() == BATCH) {
+                    scheduleInstallments(loans, undated);
+                    undated.clear();
+                }
+            }
+            if (!undated.isEmpty()) scheduleInstallments(loans, undated);
+
+            // Keyset pagination orders by applicationDate; legacy loans without one take their id's creation time
+            loans.updateMany(Filters.and(Filters.eq("applicationDate", null), Filters.type("_id", BsonType.OBJECT_ID)),
+                    List.of(new Document("$set", new Document("applicationDate", new Document("$toDate", "$_id")))));
+        };
+    }
+
+    // Months already elapsed count as paid, so auto-debit does not take a backlog of installments at once
+    private static void scheduleInstallments(MongoCollection<Document> loans, List<Document> batch) {
+        ZonedDateTime today = ZonedDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS);
+        List<WriteModel<Document>> updates = new ArrayList<>(batch.size());
+        for (Document loan : batch) {
+            ZonedDateTime anchor = loan.getDate("disbursementDate").toInstant().atZone(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS);
+            long elapsed = Math.max(0, ChronoUnit.MONTHS.between(anchor, today));
+            Date next = Date.from(anchor.plusMonths(elapsed + 1).toInstant());
+            updates.add(new UpdateOneModel<>(Filters.eq("_id", loan.get("_id")),
+                    Updates.combine(Updates.set("installmentsPaid", (int) elapsed), Updates.set("nextDueDate", next))));
+        }
+        loans.bulkWrite(updates);
+    }
+
+    private static int migrate(MongoCollection<Document> loans, MongoCollection<Document> users, List<Document> batch) {
+        Set<Object> userIds = new HashSet<>();
+        for (Document loan : batch) {
+            if (loan.get("user") instanceof DBRef ref) userIds.add(ref.getId());
+        }
+        Map<Object, Document> byId = new HashMap<>();
+        for (Document user : users.find(Filters.in("_id", userIds)).projection(Projections.include("name", "email"))) {
+            byId.put(user.get("_id"), user);
+        }
+
+        List<WriteModel<Document>> updates = new ArrayList<>(batch.size());
+        for (Document loan : batch) {
+            List<Bson> changes = new ArrayList<>();
+            changes.add(Updates.unset("user"));
+            if (loan.get("user") instanceof DBRef ref) {
+                changes.add(Updates.set("userId", ref.getId().toString()));
+                Document user = byId.get(ref.getId());
+                if (user != null) {
+                    changes.add(Updates.set("applicant", new Document("name", user.getString("name"))
+                            .append("email", user.getString("email"))));
+                }
+            }
+            updates.add(new UpdateOneModel<>(Filters.eq("_id", loan.get("_id")), Updates.combine(changes)));
+        }
+        loans.bulkWrite(updates);
+        return updates.size();
+    }
+}
@@ -0,0 +1,44 @@
+package com.bank.bootstrap;
+
+import com.bank.money.Money;
+import com.mongodb.client.model.Filters;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+public class MoneyMigration {
+
+    private static final Map<String, List<String>> MONEY_FIELDS = Map.of(
+            "users", List.of("balance"),
+            "accounts", List.of("balance"),
+            "transactions", List.of("amount", "balanceAfter"),
+            "loans", List.of("amount", "outstandingPrincipal", "accruedInterest", "emi"));
+
+    // Amounts written as strings, Decimal128 or doubles become Int64 minor units so $inc, $gte and $sum stay integral.
+    // Runs first: later migrations copy money fields and must copy minor units
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public CommandLineRunner migrateMoney(MongoTemplate mongoTemplate) {
+        return args -> MONEY_FIELDS.forEach((collection, fields) -> {
+            for (String field : fields) {
+                Document minorUnits = new Document("$toLong", new Document("$round", List.of(
+                        new Document("$multiply", List.of(new Document("$toDecimal", "$" + field), Money.MINOR_PER_MAJOR)),
+                        0)));
+                mongoTemplate.getCollection(collection).updateMany(
+                        Filters.or(Filters.type(field, BsonType.STRING),
+                                Filters.type(field, BsonType.DECIMAL128),
+                                Filters.type(field, BsonType.DOUBLE)),
+                        List.of(new Document("$set", new Document(field, minorUnits))));
+            }
+        });
+    }
+}
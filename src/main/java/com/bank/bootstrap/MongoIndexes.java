@@ -0,0 +1,56 @@
+package com.bank.bootstrap;
+
+import com.mongodb.client.model.Filters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class MongoIndexes {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoIndexes.class);
+
+    // auto-index-creation is off, so create the indexes declared on the entities once at startup
+    @Bean
+    public CommandLineRunner ensureIndexes(MongoTemplate mongoTemplate) {
+        return args -> {
+            MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> context =
+                    mongoTemplate.getConverter().getMappingContext();
+            var resolver = new MongoPersistentEntityIndexResolver(context);
+            for (MongoPersistentEntity<?> entity : context.getPersistentEntities()) {
+                if (!entity.isAnnotationPresent(Document.class)) continue;
+                IndexOperations indexOps = mongoTemplate.indexOps(entity.getType());
+                resolver.resolveIndexFor(entity.getType()).forEach(index -> {
+                    try {
+                        indexOps.createIndex(index);
+                    } catch (RuntimeException e) {
+                        log.warn("Could not create index on {}: {}", entity.getCollection(), e.getMessage());
+                    }
+                });
+            }
+            // Superseded by expires_at, which follows bank.idempotency.ttl instead of a fixed 24h;
+            // records from before keep the 24h they were written with
+            mongoTemplate.getCollection("idempotency_keys").updateMany(
+                    Filters.and(Filters.exists("expiresAt", false), Filters.exists("createdAt")),
+                    List.of(new org.bson.Document("$set", new org.bson.Document("expiresAt",
+                            new org.bson.Document("$add", List.of("$createdAt", Duration.ofHours(24).toMillis()))))));
+            try {
+                mongoTemplate.indexOps("idempotency_keys").dropIndex("expire_after");
+            } catch (RuntimeException e) {
+                // Already gone
+            }
+        };
+    }
+}
@@ -0,0 +1,20 @@
+package com.bank.config;
+
+import com.bank.money.MoneyConverters;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions.BigDecimalRepresentation;
+
+@Configuration
+public class MongoConfig {
+
+    // Money is stored as Int64 minor units and remaining BigDecimals (rates) as Decimal128,
+    // so amounts can be $inc'ed, range-compared and aggregated on the server
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return MongoCustomConversions.create(adapter -> adapter
+                .bigDecimal(BigDecimalRepresentation.DECIMAL128)
+                .registerConverters(MoneyConverters.all()));
+    }
+}
@@ -1,19 +1,44 @@
 package com.bank.config;
 
+import com.bank.security.RateLimitFilter;
+import com.bank.security.RateLimiter;
+import com.bank.security.TokenAuthenticationFilter;
+import com.bank.util.JwtUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration
+@EnableMethodSecurity
 public class SecurityConfig {
 
+    // Access rules live on the controllers (@PreAuthorize, @CurrentUser); the chain only authenticates.
+    // The filters are created here rather than as beans so they are not also registered as servlet filters.
+    // Rate limiting runs after authentication so money routes can be keyed by principal.
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtUtils jwtUtils, RateLimiter rateLimiter,
+                                                   MeterRegistry meterRegistry,
+                                                   @Value("${bank.ratelimit.auth.per-minute:30}") int authPerMinute,
+                                                   @Value("${bank.ratelimit.auth.burst:10}") int authBurst,
+                                                   @Value("${bank.ratelimit.money.per-minute:120}") int moneyPerMinute,
+                                                   @Value("${bank.ratelimit.money.burst:20}") int moneyBurst) throws Exception {
+        TokenAuthenticationFilter authentication = new TokenAuthenticationFilter(jwtUtils, meterRegistry);
+        RateLimitFilter rateLimit = new RateLimitFilter(rateLimiter,
+                RateLimiter.Tier.of(authPerMinute, authBurst),
+                RateLimiter.Tier.of(moneyPerMinute, moneyBurst), meterRegistry);
         http
                 .csrf(csrf -> csrf.disable())
                 .headers(headers -> headers.frameOptions(frame -> frame.disable()))
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterBefore(authentication, UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(rateLimit, TokenAuthenticationFilter.class)
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/h2-console/**", "/api/auth/**").permitAll()
                         .anyRequest().permitAll()
@@ -22,5 +47,3 @@ public class SecurityConfig {
         return http.build();
     }
 }
-
-
@@ -1,7 +1,8 @@
 package com.bank.controller;
 
-import com.bank.repository.UserRepository;
-import com.bank.util.JwtUtils;
+import com.bank.security.AuthenticatedUser;
+import com.bank.security.CurrentUser;
+import com.bank.service.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -10,32 +11,29 @@ import java.util.Map;
 @RestController
 @RequestMapping("/api/accounts")
 public class AccountController {
-    private final UserRepository userRepository;
-    private final JwtUtils jwtUtils;
+    private final UserService userService;
 
-    public AccountController(UserRepository userRepository, JwtUtils jwtUtils) {
-        this.userRepository = userRepository;
-        this.jwtUtils = jwtUtils;
+    public AccountController(UserService userService) {
+        this.userService = userService;
     }
 
     @GetMapping("/me")
-    public ResponseEntity<?> myAccount(@RequestHeader(name = "X-Auth-Token", required = false) String token) {
-        var rec = jwtUtils.validate(token);
-        if (rec == null) return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
-        
-        // Return user data with balance (since we're using User.balance, not Account.balance)
-        return userRepository.findById(rec.userId())
-                .<ResponseEntity<?>>map(user -> ResponseEntity.ok(Map.of(
-                    "id", user.getId(),
-                    "balance", user.getBalance(),
-                    "user", Map.of(
-                        "id", user.getId(),
-                        "name", user.getName(),
-                        "email", user.getEmail(),
-                        "role", user.getRole().name()
-                    )
-                )))
-                .orElseGet(() -> ResponseEntity.notFound().build());
+    public ResponseEntity<?> myAccount(@CurrentUser AuthenticatedUser rec) {
+        // Profile from the near-cache, balance (User.balance, not Account.balance) always from Mongo
+        var profile = userService.findProfile(rec.userId());
+        var balance = userService.findBalance(rec.userId());
+        if (profile.isEmpty() || balance.isEmpty()) return ResponseEntity.notFound().build();
+        var user = profile.get();
+        return ResponseEntity.ok(Map.of(
+            "id", user.id(),
+            "balance", balance.get(),
+            "user", Map.of(
+                "id", user.id(),
+                "name", user.name(),
+                "email", user.email(),
+                "role", user.role()
+            )
+        ));
     }
 }
 
@@ -0,0 +1,28 @@
+package com.bank.controller;
+
+import com.bank.security.AuthenticatedUser;
+import com.bank.security.CurrentUser;
+import com.bank.service.AccountStreamService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/accounts/me/events")
+public class AccountEventsController {
+
+    private final AccountStreamService streamService;
+
+    public AccountEventsController(AccountStreamService streamService) {
+        this.streamService = streamService;
+    }
+
+    // EventSource cannot set request headers; the auth filter also accepts ?token= for this path.
+    // Errors carry no body: the response type has to stay ResponseEntity<SseEmitter> to stream.
+    @GetMapping
+    public ResponseEntity<SseEmitter> stream(@CurrentUser AuthenticatedUser user) {
+        SseEmitter emitter = streamService.open(user.userId());
+        if (emitter == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(emitter);
+    }
+}
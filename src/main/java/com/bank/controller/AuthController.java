@@ -1,17 +1,22 @@
 package com.bank.controller;
 
 import com.bank.entity.User;
-import com.bank.repository.UserRepository;
+import com.bank.security.PasswordHasher;
+import com.bank.security.RateLimiter;
+import com.bank.service.TooManyRequestsException;
+import com.bank.service.UserActivityRecorder;
+import com.bank.service.UserService;
 import com.bank.user.Role;
 import com.bank.util.JwtUtils;
-import com.bank.util.PasswordEncoderUtil;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
+import java.util.Locale;
 import java.util.Map;
 
 @RestController
@@ -19,34 +24,45 @@ import java.util.Map;
 @Validated
 public class AuthController {
 
-    private final UserRepository userRepository;
+    private final UserService userService;
     private final JwtUtils jwtUtils;
+    private final PasswordHasher passwordHasher;
+    private final UserActivityRecorder activityRecorder;
+    private final RateLimiter rateLimiter;
+    private final RateLimiter.Tier loginTier;
 
-    public AuthController(UserRepository userRepository, JwtUtils jwtUtils) {
-        this.userRepository = userRepository;
+    public AuthController(UserService userService, JwtUtils jwtUtils, PasswordHasher passwordHasher,
+                          UserActivityRecorder activityRecorder, RateLimiter rateLimiter,
+                          @Value("${bank.ratelimit.auth.per-minute:30}") int authPerMinute,
+                          @Value("${bank.ratelimit.auth.burst:10}") int authBurst) {
+        this.userService = userService;
         this.jwtUtils = jwtUtils;
+        this.passwordHasher = passwordHasher;
+        this.activityRecorder = activityRecorder;
+        this.rateLimiter = rateLimiter;
+        this.loginTier = RateLimiter.Tier.of(authPerMinute, authBurst);
     }
 
     @GetMapping("/role")
     public ResponseEntity<?> getRoleByEmail(@RequestParam("email") String email) {
-        return userRepository.findByEmail(email)
+        return userService.findProfileByEmail(email)
                 .<ResponseEntity<?>>map(user -> ResponseEntity.ok(Map.of(
-                        "role", user.getRole().name()
+                        "role", user.role()
                 )))
                 .orElseGet(() -> ResponseEntity.status(404).body(Map.of("error", "User not found")));
     }
 
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody RegisterRequest request) {
-        if (userRepository.findByEmail(request.email()).isPresent()) {
+        if (userService.findByEmail(request.email()).isPresent()) {
             return ResponseEntity.badRequest().body(Map.of("error", "Email already registered"));
         }
         User user = new User();
         user.setName(request.name());
         user.setEmail(request.email());
-        user.setPasswordHash(PasswordEncoderUtil.encoder().encode(request.password()));
+        user.setPasswordHash(passwordHasher.encode(request.password()));
         user.setRole(Role.CUSTOMER);
-        user = userRepository.save(user);
+        user = userService.save(user);
         String token = jwtUtils.issueToken(user.getId(), user.getRole().name());
         return ResponseEntity.ok(Map.of(
                 "token", token,
@@ -57,11 +73,24 @@ public class AuthController {
 
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginRequest request) {
-        return userRepository.findByEmail(request.email())
-                .filter(u -> PasswordEncoderUtil.encoder().matches(request.password(), u.getPasswordHash()))
+        // Per account as well as per IP (RateLimitFilter), so guessing one password from many IPs is limited too
+        if (request.email() != null) {
+            long wait = rateLimiter.acquire("auth:email:" + request.email().trim().toLowerCase(Locale.ROOT), loginTier);
+            if (wait > 0) {
+                throw new TooManyRequestsException("Too many sign-in attempts for this account, retry later",
+                        RateLimiter.retryAfterSeconds(wait));
+            }
+        }
+        return userService.findByEmail(request.email())
+                .filter(u -> passwordHasher.matches(request.password(), u.getPasswordHash()))
                 .map(u -> {
-                    u.setLastLogin(Instant.now());
-                    userRepository.save(u);
+                    // The work factor changed since this hash was made; upgrade it while we have the password
+                    if (passwordHasher.needsRehash(u.getPasswordHash())) {
+                        String rehashed = passwordHasher.encode(request.password());
+                        userService.updatePasswordHash(u.getId(), u.getPasswordHash(), rehashed);
+                        u.setPasswordHash(rehashed);
+                    }
+                    activityRecorder.recordLogin(u.getId(), Instant.now());
                     String token = jwtUtils.issueToken(u.getId(), u.getRole().name());
                     return ResponseEntity.ok(Map.of(
                             "token", token,
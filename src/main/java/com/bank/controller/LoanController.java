@@ -1,20 +1,39 @@
 package com.bank.controller;
 
+import com.bank.dto.LoanDecisionResult;
+import com.bank.dto.LoanPage;
 import com.bank.entity.Loan;
+import com.bank.loan.AmortizationEngine;
+import com.bank.loan.LoanFilter;
+import com.bank.loan.LoanPortfolioStats;
+import com.bank.loan.LoanStatus;
 import com.bank.loan.LoanType;
+import com.bank.money.Money;
+import com.bank.security.AuthenticatedUser;
+import com.bank.security.CurrentUser;
+import com.bank.service.IdempotencyService;
+import com.bank.service.InsufficientFundsException;
+import com.bank.service.LoanRepaymentService;
 import com.bank.service.LoanService;
-import com.bank.util.JwtUtils;
+import com.bank.service.LoanTransitionException;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/loans")
@@ -22,38 +41,27 @@ import java.util.Map;
 public class LoanController {
     
     private final LoanService loanService;
-    private final JwtUtils jwtUtils;
+    private final LoanRepaymentService repaymentService;
+    private final IdempotencyService idempotencyService;
+    private final LoanPortfolioStats portfolioStats;
     
-    public LoanController(LoanService loanService, JwtUtils jwtUtils) {
+    public LoanController(LoanService loanService, LoanRepaymentService repaymentService,
+                          IdempotencyService idempotencyService, LoanPortfolioStats portfolioStats) {
         this.loanService = loanService;
-        this.jwtUtils = jwtUtils;
-    }
-    
-    private boolean isAdmin(String token) {
-        var rec = jwtUtils.validate(token);
-        return rec != null && "ADMIN".equals(rec.role());
-    }
-    
-    private boolean isAdminOrEmployee(String token) {
-        var rec = jwtUtils.validate(token);
-        return rec != null && ("ADMIN".equals(rec.role()) || "EMPLOYEE".equals(rec.role()));
-    }
-    
-    private String getUserId(String token) {
-        var rec = jwtUtils.validate(token);
-        if (rec == null) throw new RuntimeException("Invalid token");
-        return rec.userId();
+        this.repaymentService = repaymentService;
+        this.idempotencyService = idempotencyService;
+        this.portfolioStats = portfolioStats;
     }
     
     @PostMapping("/apply")
-    public ResponseEntity<?> applyForLoan(@RequestHeader("X-Auth-Token") String token,
-                                         @RequestBody LoanApplicationRequest request) {
+    public ResponseEntity<?> applyForLoan(@CurrentUser AuthenticatedUser user,
+                                         @Valid @RequestBody LoanApplicationRequest request) {
         try {
-            String userId = getUserId(token);
+            String userId = user.userId();
             Loan loan = loanService.applyForLoan(
                 userId, 
                 request.loanType(), 
-                request.amount(), 
+                Money.of(request.amount()), 
                 request.tenureMonths(), 
                 request.purpose()
             );
@@ -68,87 +76,168 @@ public class LoanController {
     }
     
     @GetMapping("/my-loans")
-    public ResponseEntity<?> getMyLoans(@RequestHeader("X-Auth-Token") String token) {
-        try {
-            String userId = getUserId(token);
-            List<Loan> loans = loanService.getUserLoans(userId);
-            return ResponseEntity.ok(loans);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
-        }
+    public ResponseEntity<?> getMyLoans(@CurrentUser AuthenticatedUser user,
+                                        @RequestParam(required = false) LoanStatus status,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(required = false) Integer limit) {
+        LoanFilter filter = new LoanFilter(status, null, null, null, null, null, user.userId());
+        return ResponseEntity.ok(loanService.findLoans(filter, cursor, limit));
     }
     
     @GetMapping("/pending")
-    public ResponseEntity<?> getPendingLoans(@RequestHeader("X-Auth-Token") String token) {
-        if (!isAdminOrEmployee(token)) {
-            return ResponseEntity.status(403).body(Map.of("error", "Admin or Employee access required"));
-        }
-        
-        try {
-            List<Loan> loans = loanService.getPendingLoans();
-            return ResponseEntity.ok(loans);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
-        }
+    @PreAuthorize("hasAnyRole('ADMIN', 'EMPLOYEE')")
+    public ResponseEntity<?> getPendingLoans(@RequestParam(required = false) LoanType loanType,
+                                             @RequestParam(required = false) BigDecimal minAmount,
+                                             @RequestParam(required = false) BigDecimal maxAmount,
+                                             @RequestParam(required = false) Instant from,
+                                             @RequestParam(required = false) Instant to,
+                                             @RequestParam(required = false) String applicant,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer limit) {
+        return queue(LoanStatus.PENDING, loanType, minAmount, maxAmount, from, to, applicant, cursor, limit);
     }
     
     @GetMapping("/all")
-    public ResponseEntity<?> getAllLoans(@RequestHeader("X-Auth-Token") String token) {
-        if (!isAdminOrEmployee(token)) {
-            return ResponseEntity.status(403).body(Map.of("error", "Admin or Employee access required"));
-        }
-        
-        try {
-            List<Loan> loans = loanService.getAllLoans();
-            return ResponseEntity.ok(loans);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    @PreAuthorize("hasAnyRole('ADMIN', 'EMPLOYEE')")
+    public ResponseEntity<?> getAllLoans(@RequestParam(required = false) LoanStatus status,
+                                         @RequestParam(required = false) LoanType loanType,
+                                         @RequestParam(required = false) BigDecimal minAmount,
+                                         @RequestParam(required = false) BigDecimal maxAmount,
+                                         @RequestParam(required = false) Instant from,
+                                         @RequestParam(required = false) Instant to,
+                                         @RequestParam(required = false) String applicant,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer limit) {
+        return queue(status, loanType, minAmount, maxAmount, from, to, applicant, cursor, limit);
+    }
+    
+    // applicant may be a user id or an email; an unknown email simply matches nothing
+    private ResponseEntity<?> queue(LoanStatus status, LoanType loanType, BigDecimal minAmount, BigDecimal maxAmount,
+                                    Instant from, Instant to, String applicant, String cursor, Integer limit) {
+        String userId = null;
+        if (applicant != null && !applicant.isBlank()) {
+            Optional<String> resolved = loanService.resolveApplicant(applicant.trim());
+            if (resolved.isEmpty()) return ResponseEntity.ok(new LoanPage(List.of(), null));
+            userId = resolved.get();
         }
+        LoanFilter filter = new LoanFilter(status, loanType,
+                minAmount != null ? Money.of(minAmount) : null,
+                maxAmount != null ? Money.of(maxAmount) : null,
+                from, to, userId);
+        return ResponseEntity.ok(loanService.findLoans(filter, cursor, limit));
     }
     
     @PostMapping("/{loanId}/approve")
-    public ResponseEntity<?> approveLoan(@RequestHeader("X-Auth-Token") String token,
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> approveLoan(@CurrentUser AuthenticatedUser admin,
                                          @PathVariable String loanId,
                                          @RequestBody LoanDecisionRequest request) {
-        if (!isAdmin(token)) {
-            return ResponseEntity.status(403).body(Map.of("error", "Admin access required"));
-        }
-        
         try {
-            String adminId = getUserId(token);
-            Loan loan = loanService.approveLoan(loanId, adminId, request.comments());
+            String adminId = admin.userId();
+            Loan loan = loanService.approveLoan(loanId, adminId, request.comments(), request.version());
             
             return ResponseEntity.ok(Map.of(
                 "message", "Loan approved successfully",
                 "loanId", loan.getId(),
                 "status", loan.getStatus().name()
             ));
+        } catch (LoanTransitionException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
     
     @PostMapping("/{loanId}/reject")
-    public ResponseEntity<?> rejectLoan(@RequestHeader("X-Auth-Token") String token,
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rejectLoan(@CurrentUser AuthenticatedUser admin,
                                         @PathVariable String loanId,
                                         @RequestBody LoanDecisionRequest request) {
-        if (!isAdmin(token)) {
-            return ResponseEntity.status(403).body(Map.of("error", "Admin access required"));
-        }
-        
         try {
-            String adminId = getUserId(token);
-            Loan loan = loanService.rejectLoan(loanId, adminId, request.comments());
+            String adminId = admin.userId();
+            Loan loan = loanService.rejectLoan(loanId, adminId, request.comments(), request.version());
             return ResponseEntity.ok(Map.of(
                 "message", "Loan rejected",
                 "loanId", loan.getId(),
                 "status", loan.getStatus().name()
             ));
+        } catch (LoanTransitionException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
     
+    @PostMapping("/decisions")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> decideLoans(@CurrentUser AuthenticatedUser admin,
+                                         @RequestBody BulkDecisionRequest request) {
+        if (request.decisions() == null || request.decisions().isEmpty())
+            return ResponseEntity.badRequest().body(Map.of("error", "decisions must not be empty"));
+        List<LoanDecisionResult> results = loanService.decideAll(request.decisions(), admin.userId());
+        long failed = results.stream().filter(r -> r.error() != null).count();
+        return ResponseEntity.ok(Map.of(
+            "results", results,
+            "applied", results.size() - failed,
+            "failed", failed
+        ));
+    }
+    
+    @GetMapping("/quote")
+    public ResponseEntity<?> quote(@RequestParam LoanType loanType,
+                                   @RequestParam BigDecimal amount,
+                                   @RequestParam Integer tenureMonths) {
+        return ResponseEntity.ok(loanService.quote(loanType, Money.of(amount), tenureMonths));
+    }
+    
+    @GetMapping("/{loanId}/schedule")
+    public ResponseEntity<?> schedule(@CurrentUser AuthenticatedUser user, @PathVariable String loanId) {
+        Optional<Loan> loan = loanService.getLoanById(loanId);
+        if (loan.isEmpty()) return ResponseEntity.status(404).body(Map.of("error", "Loan not found"));
+        if (!user.canAccess(loan.get().getUserId()) && !"EMPLOYEE".equals(user.role()))
+            return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
+        return ResponseEntity.ok(loanService.schedule(loan.get()));
+    }
+    
+    // Owner only; without an amount the EMI is paid
+    @PostMapping("/{loanId}/repay")
+    public ResponseEntity<?> repay(@CurrentUser AuthenticatedUser user,
+                                   @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                   @PathVariable String loanId,
+                                   @RequestBody(required = false) RepaymentRequest request) {
+        String userId = user.userId();
+        return idempotencyService.execute(idempotencyKey, userId, "loan-repay:" + loanId, request,
+                () -> repay(userId, loanId, request));
+    }
+    
+    private ResponseEntity<?> repay(String userId, String loanId, RepaymentRequest request) {
+        Optional<Loan> loan = loanService.getLoanById(loanId);
+        if (loan.isEmpty()) return ResponseEntity.status(404).body(Map.of("error", "Loan not found"));
+        if (!userId.equals(loan.get().getUserId())) return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
+        try {
+            Money amount = request != null && request.amount() != null ? Money.of(request.amount()) : null;
+            return ResponseEntity.ok(repaymentService.repay(loan.get(), amount));
+        } catch (LoanTransitionException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (InsufficientFundsException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    // Runs the auto-debit for a day (today by default) on demand, e.g. to catch up after an outage
+    @PostMapping("/auto-debit")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> autoDebit(@RequestParam(required = false) LocalDate date) {
+        return ResponseEntity.ok(repaymentService.autoDebit(date != null ? date : LocalDate.now(ZoneOffset.UTC)));
+    }
+    
+    // Served from in-memory totals; rebuiltAt says when they were last reconciled with Mongo
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> stats() {
+        return ResponseEntity.ok(portfolioStats.portfolio());
+    }
+    
     @GetMapping("/types")
     public ResponseEntity<?> getLoanTypes() {
         LoanType[] types = LoanType.values();
@@ -159,9 +248,14 @@ public class LoanController {
     public record LoanApplicationRequest(
         @NotNull LoanType loanType,
         @NotNull @DecimalMin("1000.0") BigDecimal amount,
-        @NotNull @Min(1) Integer tenureMonths,
+        @NotNull @Min(1) @Max(AmortizationEngine.MAX_TENURE_MONTHS) Integer tenureMonths,
         @NotBlank String purpose
     ) {}
     
-    public record LoanDecisionRequest(String comments) {}
+    // version is optional; when given, the decision only applies if the loan is still at that version
+    public record LoanDecisionRequest(String comments, Long version) {}
+    
+    public record BulkDecisionRequest(List<LoanService.BulkDecision> decisions) {}
+    
+    public record RepaymentRequest(@DecimalMin("0.01") BigDecimal amount) {}
 }
@@ -1,183 +1,153 @@
 package com.bank.controller;
 
-import com.bank.entity.Transaction;
-import com.bank.repository.TransactionRepository;
+import com.bank.money.Money;
+import com.bank.security.AuthenticatedUser;
+import com.bank.security.CurrentUser;
 import com.bank.transaction.TransactionType;
-import com.bank.entity.User;
-import com.bank.repository.UserRepository;
-import com.bank.util.JwtUtils;
+import com.bank.service.BalanceService;
+import com.bank.service.IdempotencyService;
+import com.bank.service.InsufficientFundsException;
+import com.bank.service.TransactionService;
+import com.bank.service.TransferService;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.http.ResponseEntity;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
-import java.util.List;
+import java.time.Instant;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/api/transactions")
 @Validated
 public class TransactionController {
 
-    private final TransactionRepository transactionRepository;
-    private final UserRepository userRepository;
-    private final JwtUtils jwtUtils;
-
-    public TransactionController(TransactionRepository transactionRepository, UserRepository userRepository, JwtUtils jwtUtils) {
-        this.transactionRepository = transactionRepository;
-        this.userRepository = userRepository;
-        this.jwtUtils = jwtUtils;
-    }
-
-    private String requireUser(String token) {
-        var rec = jwtUtils.validate(token);
-        return rec != null ? rec.userId() : null;
+    private final TransactionService transactionService;
+    private final BalanceService balanceService;
+    private final TransferService transferService;
+    private final IdempotencyService idempotencyService;
+
+    public TransactionController(TransactionService transactionService,
+                                 BalanceService balanceService, TransferService transferService,
+                                 IdempotencyService idempotencyService) {
+        this.transactionService = transactionService;
+        this.balanceService = balanceService;
+        this.transferService = transferService;
+        this.idempotencyService = idempotencyService;
     }
 
     @GetMapping("/user/{id}")
-    public ResponseEntity<?> history(@RequestHeader(name = "X-Auth-Token", required = false) String token,
-                                     @PathVariable String id) {
-        var rec = jwtUtils.validate(token);
-        if (rec == null) return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
-        if (!rec.userId().equals(id) && !"ADMIN".equals(rec.role()))
+    public ResponseEntity<?> history(@CurrentUser AuthenticatedUser rec,
+                                     @PathVariable String id,
+                                     @RequestParam(required = false) String cursor,
+                                     @RequestParam(required = false) Integer limit,
+                                     @RequestParam(required = false) Instant from,
+                                     @RequestParam(required = false) Instant to) {
+        if (!rec.canAccess(id))
             return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
-        List<Transaction> txs = transactionRepository.findByUserIdOrderByTimestampDesc(id);
-        return ResponseEntity.ok(txs);
+        return ResponseEntity.ok(transactionService.history(id, cursor, limit, from, to));
     }
 
     @GetMapping("/my-transactions")
-    public ResponseEntity<?> myTransactions(@RequestHeader(name = "X-Auth-Token", required = false) String token) {
-        String userId = requireUser(token);
-        if (userId == null) return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
-        
-        List<Transaction> txs = transactionRepository.findByUserIdOrderByTimestampDesc(userId);
-        return ResponseEntity.ok(txs);
+    public ResponseEntity<?> myTransactions(@CurrentUser AuthenticatedUser user,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) Instant from,
+                                            @RequestParam(required = false) Instant to) {
+        return ResponseEntity.ok(transactionService.history(user.userId(), cursor, limit, from, to));
+    }
+
+    @GetMapping("/statement")
+    public ResponseEntity<?> statement(@CurrentUser AuthenticatedUser rec,
+                                       @RequestParam(required = false) String userId,
+                                       @RequestParam Instant from,
+                                       @RequestParam Instant to,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(required = false) Integer limit) {
+        String subject = userId != null ? userId : rec.userId();
+        if (!rec.canAccess(subject))
+            return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
+        return ResponseEntity.ok(transactionService.statement(subject, from, to, cursor, limit));
     }
 
     @PostMapping
-    @Transactional
-    public ResponseEntity<?> create(@RequestHeader(name = "X-Auth-Token", required = false) String token,
+    public ResponseEntity<?> create(@CurrentUser AuthenticatedUser user,
+                                    @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
                                     @RequestBody CreateRequest request) {
-        String userId = requireUser(token);
-        if (userId == null) return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
+        String userId = user.userId();
+        return idempotencyService.execute(idempotencyKey, userId, "create", request, () -> post(userId, request));
+    }
+
+    private ResponseEntity<?> post(String userId, CreateRequest request) {
         if (!(request.type() == TransactionType.DEPOSIT || request.type() == TransactionType.WITHDRAW)) {
             return ResponseEntity.badRequest().body(Map.of("error", "Unsupported type for this endpoint"));
         }
-        User user = userRepository.findById(userId).orElse(null);
-        if (user == null) return ResponseEntity.status(404).body(Map.of("error", "User not found"));
-
-        BigDecimal newBalance = user.getBalance();
-        if (request.type() == TransactionType.DEPOSIT) {
-            newBalance = newBalance.add(request.amount());
-        } else {
-            if (newBalance.compareTo(request.amount()) < 0) {
-                return ResponseEntity.badRequest().body(Map.of("error", "Insufficient funds"));
-            }
-            newBalance = newBalance.subtract(request.amount());
+        String description = request.description() != null && !request.description().trim().isEmpty()
+            ? request.description()
+            : (request.type() == TransactionType.DEPOSIT ? "Money deposit" : "Money withdrawal");
+        Money amount = Money.of(request.amount());
+        Money balance;
+        try {
+            balance = (request.type() == TransactionType.DEPOSIT
+                    ? balanceService.deposit(userId, amount, description)
+                    : balanceService.withdraw(userId, amount, description)).orElse(null);
+        } catch (InsufficientFundsException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
-        user.setBalance(newBalance);
-        user.setTotalTransactions(user.getTotalTransactions() + 1);
-        userRepository.save(user);
-
-        Transaction tx = new Transaction();
-        tx.setUserId(userId);
-        tx.setAmount(request.amount());
-        tx.setType(request.type());
-        tx.setDescription(request.description() != null && !request.description().trim().isEmpty() 
-            ? request.description() 
-            : (request.type() == TransactionType.DEPOSIT ? "Money deposit" : "Money withdrawal"));
-        transactionRepository.save(tx);
-
-        return ResponseEntity.ok(Map.of("balance", user.getBalance()));
+        if (balance == null) return ResponseEntity.status(404).body(Map.of("error", "User not found"));
+
+        return ResponseEntity.ok(Map.of("balance", balance));
     }
 
     @PostMapping("/transfer")
-    @Transactional
-    public ResponseEntity<?> transfer(@RequestHeader(name = "X-Auth-Token", required = false) String token,
+    public ResponseEntity<?> transfer(@CurrentUser AuthenticatedUser user,
+                                      @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
                                       @RequestBody TransferRequest request) {
-        String fromId = requireUser(token);
-        if (fromId == null) return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
+        String fromId = user.userId();
+        return idempotencyService.execute(idempotencyKey, fromId, "transfer", request, () -> transfer(fromId, request));
+    }
+
+    private ResponseEntity<?> transfer(String fromId, TransferRequest request) {
         if (fromId.equals(request.toUserId())) return ResponseEntity.badRequest().body(Map.of("error", "Cannot transfer to self"));
 
-        User from = userRepository.findById(fromId).orElse(null);
-        User to = userRepository.findById(request.toUserId()).orElse(null);
-        if (from == null || to == null) return ResponseEntity.status(404).body(Map.of("error", "User not found"));
-        if (from.getBalance().compareTo(request.amount()) < 0) return ResponseEntity.badRequest().body(Map.of("error", "Insufficient funds"));
-
-        from.setBalance(from.getBalance().subtract(request.amount()));
-        to.setBalance(to.getBalance().add(request.amount()));
-        from.setTotalTransactions(from.getTotalTransactions() + 1);
-        to.setTotalTransactions(to.getTotalTransactions() + 1);
-        userRepository.save(from);
-        userRepository.save(to);
-
-        Transaction debit = new Transaction();
-        debit.setUserId(fromId);
-        debit.setAmount(request.amount());
-        debit.setType(TransactionType.TRANSFER);
-        debit.setDescription("Transfer to " + to.getName() + " (" + to.getEmail() + ")");
-        transactionRepository.save(debit);
-
-        Transaction credit = new Transaction();
-        credit.setUserId(to.getId());
-        credit.setAmount(request.amount());
-        credit.setType(TransactionType.TRANSFER);
-        credit.setDescription("Transfer from " + from.getName() + " (" + from.getEmail() + ")");
-        transactionRepository.save(credit);
-
-        return ResponseEntity.ok(Map.of(
-            "fromBalance", from.getBalance(), 
-            "toBalance", to.getBalance(),
-            "message", "Transfer successful"
-        ));
+        try {
+            var result = transferService.transfer(fromId, request.toUserId(), Money.of(request.amount()));
+            return ResponseEntity.ok(Map.of(
+                "fromBalance", result.fromBalance(),
+                "toBalance", result.toBalance(),
+                "message", "Transfer successful"
+            ));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body(Map.of("error", "User not found"));
+        } catch (InsufficientFundsException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @PostMapping("/transfer-by-email")
-    @Transactional
-    public ResponseEntity<?> transferByEmail(@RequestHeader(name = "X-Auth-Token", required = false) String token,
+    public ResponseEntity<?> transferByEmail(@CurrentUser AuthenticatedUser user,
+                                           @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
                                            @RequestBody TransferByEmailRequest request) {
-        String fromId = requireUser(token);
-        if (fromId == null) return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
-
-        User from = userRepository.findById(fromId).orElse(null);
-        if (from == null) return ResponseEntity.status(404).body(Map.of("error", "Sender not found"));
-
-        User to = userRepository.findByEmail(request.toEmail()).orElse(null);
-        if (to == null) return ResponseEntity.status(404).body(Map.of("error", "Recipient not found"));
-        
-        if (fromId.equals(to.getId())) return ResponseEntity.badRequest().body(Map.of("error", "Cannot transfer to self"));
-        if (from.getBalance().compareTo(request.amount()) < 0) return ResponseEntity.badRequest().body(Map.of("error", "Insufficient funds"));
-
-        // Update balances
-        from.setBalance(from.getBalance().subtract(request.amount()));
-        to.setBalance(to.getBalance().add(request.amount()));
-        from.setTotalTransactions(from.getTotalTransactions() + 1);
-        to.setTotalTransactions(to.getTotalTransactions() + 1);
-        userRepository.save(from);
-        userRepository.save(to);
-
-        // Create transaction records
-        Transaction debit = new Transaction();
-        debit.setUserId(fromId);
-        debit.setAmount(request.amount());
-        debit.setType(TransactionType.TRANSFER);
-        debit.setDescription("Transfer to " + to.getName() + " (" + to.getEmail() + ")");
-        transactionRepository.save(debit);
-
-        Transaction credit = new Transaction();
-        credit.setUserId(to.getId());
-        credit.setAmount(request.amount());
-        credit.setType(TransactionType.TRANSFER);
-        credit.setDescription("Transfer from " + from.getName() + " (" + from.getEmail() + ")");
-        transactionRepository.save(credit);
-
-        return ResponseEntity.ok(Map.of(
-            "fromBalance", from.getBalance(), 
-            "toBalance", to.getBalance(),
-            "message", "Transfer successful to " + to.getName()
-        ));
+        String fromId = user.userId();
+        return idempotencyService.execute(idempotencyKey, fromId, "transfer-by-email", request,
+                () -> transferByEmail(fromId, request));
+    }
+
+    private ResponseEntity<?> transferByEmail(String fromId, TransferByEmailRequest request) {
+        try {
+            var result = transferService.transferByEmail(fromId, request.toEmail(), Money.of(request.amount()));
+            return ResponseEntity.ok(Map.of(
+                "fromBalance", result.fromBalance(),
+                "toBalance", result.toBalance(),
+                "message", "Transfer successful to " + result.to().getName()
+            ));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+        } catch (InsufficientFundsException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     public record CreateRequest(@NotNull BigDecimal amount, @NotNull TransactionType type, String description) {}
@@ -0,0 +1,59 @@
+package com.bank.controller;
+
+import com.bank.security.AuthenticatedUser;
+import com.bank.security.CurrentUser;
+import com.bank.service.TransactionExportService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/transactions/export")
+public class TransactionExportController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
+    private final TransactionExportService exportService;
+
+    public TransactionExportController(TransactionExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    // The body is written on the MVC async executor, so the request thread returns immediately
+    @GetMapping
+    public ResponseEntity<?> export(@CurrentUser AuthenticatedUser rec,
+                                    @RequestParam(defaultValue = "ndjson") String format,
+                                    @RequestParam(required = false) String userId,
+                                    @RequestParam(required = false) Instant from,
+                                    @RequestParam(required = false) Instant to) {
+        String subject = userId != null ? userId : rec.userId();
+        if (!rec.canAccess(subject))
+            return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
+
+        StreamingResponseBody body;
+        MediaType mediaType;
+        switch (format.toLowerCase()) {
+            case "ndjson" -> {
+                body = out -> exportService.writeNdjson(subject, from, to, out);
+                mediaType = NDJSON;
+            }
+            case "csv" -> {
+                body = out -> exportService.writeCsv(subject, from, to, out);
+                mediaType = CSV;
+            }
+            default -> {
+                return ResponseEntity.badRequest().body(Map.of("error", "Unsupported format: " + format));
+            }
+        }
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transactions." + format.toLowerCase() + "\"")
+                .body(body);
+    }
+}
@@ -1,13 +1,14 @@
 package com.bank.controller;
 
 import com.bank.entity.User;
-import com.bank.repository.UserRepository;
+import com.bank.money.Money;
+import com.bank.security.PasswordHasher;
+import com.bank.service.UserService;
 import com.bank.user.Role;
-import com.bank.util.JwtUtils;
-import com.bank.util.PasswordEncoderUtil;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,75 +20,62 @@ import java.util.Map;
 @Validated
 public class UserController {
 
-    private final UserRepository userRepository;
-    private final JwtUtils jwtUtils;
+    private final UserService userService;
+    private final PasswordHasher passwordHasher;
 
-    public UserController(UserRepository userRepository, JwtUtils jwtUtils) {
-        this.userRepository = userRepository;
-        this.jwtUtils = jwtUtils;
-    }
-
-    private boolean isAdmin(String token) {
-        var rec = jwtUtils.validate(token);
-        return rec != null && "ADMIN".equals(rec.role());
+    public UserController(UserService userService, PasswordHasher passwordHasher) {
+        this.userService = userService;
+        this.passwordHasher = passwordHasher;
     }
 
     @GetMapping
-    public ResponseEntity<?> list(@RequestHeader(name = "X-Auth-Token", required = false) String token) {
-        if (!isAdmin(token)) return ResponseEntity.status(403).body(Map.of("error", "Admin only"));
-        List<User> users = userRepository.findAll();
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> list() {
+        List<User> users = userService.findAll();
         return ResponseEntity.ok(users);
     }
 
     @GetMapping("/by-email/{email}")
-    public ResponseEntity<?> findByEmail(@RequestHeader(name = "X-Auth-Token", required = false) String token,
-                                        @PathVariable String email) {
-        var rec = jwtUtils.validate(token);
-        if (rec == null) return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
-        
-        return userRepository.findByEmail(email)
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<?> findByEmail(@PathVariable String email) {
+        return userService.findProfileByEmail(email)
                 .<ResponseEntity<?>>map(user -> ResponseEntity.ok(Map.of(
-                    "id", user.getId(),
-                    "name", user.getName(),
-                    "email", user.getEmail()
+                    "id", user.id(),
+                    "name", user.name(),
+                    "email", user.email()
                 )))
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @PostMapping
-    public ResponseEntity<?> create(@RequestHeader(name = "X-Auth-Token", required = false) String token,
-                                    @RequestBody CreateRequest request) {
-        if (!isAdmin(token)) return ResponseEntity.status(403).body(Map.of("error", "Admin only"));
-        if (userRepository.findByEmail(request.email()).isPresent()) {
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> create(@RequestBody CreateRequest request) {
+        if (userService.findByEmail(request.email()).isPresent()) {
             return ResponseEntity.badRequest().body(Map.of("error", "Email already registered"));
         }
         User u = new User();
         u.setName(request.name());
         u.setEmail(request.email());
-        u.setPasswordHash(PasswordEncoderUtil.encoder().encode(request.passwordHash()));
+        u.setPasswordHash(passwordHasher.encode(request.passwordHash()));
         u.setRole(request.role());
-        u.setBalance(new java.math.BigDecimal("0.00"));
-        return ResponseEntity.ok(userRepository.save(u));
+        u.setBalance(Money.ZERO);
+        return ResponseEntity.ok(userService.save(u));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<?> update(@RequestHeader(name = "X-Auth-Token", required = false) String token,
-                                    @PathVariable String id,
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> update(@PathVariable String id,
                                     @RequestBody UpdateRequest request) {
-        if (!isAdmin(token)) return ResponseEntity.status(403).body(Map.of("error", "Admin only"));
-        return userRepository.findById(id).map(u -> {
-            if (request.name() != null) u.setName(request.name());
-            if (request.role() != null) u.setRole(request.role());
-            return ResponseEntity.ok(userRepository.save(u));
-        }).orElseGet(() -> ResponseEntity.notFound().build());
+        return userService.updateProfile(id, request.name(), request.role())
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> delete(@RequestHeader(name = "X-Auth-Token", required = false) String token,
-                                    @PathVariable String id) {
-        if (!isAdmin(token)) return ResponseEntity.status(403).body(Map.of("error", "Admin only"));
-        if (!userRepository.existsById(id)) return ResponseEntity.notFound().build();
-        userRepository.deleteById(id);
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> delete(@PathVariable String id) {
+        if (!userService.existsById(id)) return ResponseEntity.notFound().build();
+        userService.deleteById(id);
         return ResponseEntity.noContent().build();
     }
 
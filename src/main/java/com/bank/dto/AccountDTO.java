@@ -1,7 +1,7 @@
 package com.bank.dto;
 
-import java.math.BigDecimal;
+import com.bank.money.Money;
 
-public record AccountDTO(String id, String userId, BigDecimal balance) {}
+public record AccountDTO(String id, String userId, Money balance) {}
 
 
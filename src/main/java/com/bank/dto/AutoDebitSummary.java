@@ -0,0 +1,6 @@
+package com.bank.dto;
+
+import java.time.LocalDate;
+
+/** Totals of one auto-debit run: installments due, taken, left for lack of funds, skipped because a payment got there first, and failed. */
+public record AutoDebitSummary(LocalDate date, long due, long paid, long insufficientFunds, long skipped, long failed) {}
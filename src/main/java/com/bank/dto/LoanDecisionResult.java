@@ -0,0 +1,16 @@
+package com.bank.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/** Outcome of one decision in a bulk request: the loan's new status, or why it was not applied. */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record LoanDecisionResult(String loanId, String status, String error) {
+
+    public static LoanDecisionResult applied(String loanId, String status) {
+        return new LoanDecisionResult(loanId, status, null);
+    }
+
+    public static LoanDecisionResult failed(String loanId, String error) {
+        return new LoanDecisionResult(loanId, null, error);
+    }
+}
@@ -0,0 +1,7 @@
+package com.bank.dto;
+
+import com.bank.entity.Loan;
+
+import java.util.List;
+
+public record LoanPage(List<Loan> items, String nextCursor) {}
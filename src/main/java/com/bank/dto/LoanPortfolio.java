@@ -0,0 +1,23 @@
+package com.bank.dto;
+
+import com.bank.loan.LoanStatus;
+import com.bank.loan.LoanType;
+import com.bank.money.Money;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Portfolio aggregates. Exposure is the outstanding principal of disbursed loans; the approval
+ * rate is approved (approved, disbursed or completed) over decided loans, null before any decision.
+ */
+public record LoanPortfolio(long totalLoans,
+                            Map<LoanStatus, Long> countByStatus,
+                            Map<LoanType, Long> countByType,
+                            Map<LoanType, Money> exposureByType,
+                            Money totalExposure,
+                            BigDecimal approvalRate,
+                            BigDecimal averageTenureMonths,
+                            Map<LoanType, BigDecimal> averageTenureByType,
+                            Instant rebuiltAt) {}
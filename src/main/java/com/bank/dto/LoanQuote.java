@@ -0,0 +1,9 @@
+package com.bank.dto;
+
+import com.bank.loan.LoanType;
+import com.bank.money.Money;
+
+import java.math.BigDecimal;
+
+public record LoanQuote(LoanType loanType, Money amount, int tenureMonths, BigDecimal interestRate,
+                        Money emi, Money totalInterest, Money totalPayment) {}
@@ -0,0 +1,12 @@
+package com.bank.dto;
+
+import com.bank.loan.LoanStatus;
+import com.bank.money.Money;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+/** One posted repayment: how it was split and what the loan owes afterwards. */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record LoanRepayment(String loanId, Money amount, Money principal, Money interest,
+                            Money outstandingPrincipal, LoanStatus status, Instant nextDueDate) {}
@@ -0,0 +1,11 @@
+package com.bank.dto;
+
+import com.bank.entity.Transaction;
+import com.bank.money.Money;
+
+import java.time.Instant;
+import java.util.List;
+
+/** A statement page; {@code nextCursor} is null on the last one, the balances are for the whole range. */
+public record StatementDTO(String userId, Instant from, Instant to, Money openingBalance,
+                           Money closingBalance, List<Transaction> lines, String nextCursor) {}
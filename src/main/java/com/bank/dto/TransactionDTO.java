@@ -1,8 +1,9 @@
 package com.bank.dto;
 
-import java.math.BigDecimal;
+import com.bank.money.Money;
+
 import java.time.Instant;
 
-public record TransactionDTO(String id, String userId, BigDecimal amount, String type, String description, Instant timestamp) {}
+public record TransactionDTO(String id, String userId, Money amount, String type, String description, Instant timestamp) {}
 
 
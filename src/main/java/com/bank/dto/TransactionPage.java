@@ -0,0 +1,7 @@
+package com.bank.dto;
+
+import com.bank.entity.Transaction;
+
+import java.util.List;
+
+public record TransactionPage(List<Transaction> items, String nextCursor) {}
@@ -0,0 +1,38 @@
+package com.bank.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/** Progress of one nightly accrual run, keyed by the day it accrues through (yyyy-MM-dd). */
+@Document(collection = "loan_accrual_runs")
+public class AccrualRun {
+
+    @Id
+    private String id;
+
+    // _id of the last loan whose chunk was written; the run resumes after it
+    private String lastLoanId;
+
+    private boolean completed;
+
+    private long loansAccrued;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public String getLastLoanId() { return lastLoanId; }
+    public void setLastLoanId(String lastLoanId) { this.lastLoanId = lastLoanId; }
+    public boolean isCompleted() { return completed; }
+    public void setCompleted(boolean completed) { this.completed = completed; }
+    public long getLoansAccrued() { return loansAccrued; }
+    public void setLoansAccrued(long loansAccrued) { this.loansAccrued = loansAccrued; }
+    public Instant getStartedAt() { return startedAt; }
+    public void setStartedAt(Instant startedAt) { this.startedAt = startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(Instant finishedAt) { this.finishedAt = finishedAt; }
+}
@@ -0,0 +1,50 @@
+package com.bank.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+
+    @Id
+    private String id;
+
+    private String fingerprint;
+
+    // Null while the first request is still in flight
+    private Integer status;
+
+    private String body;
+
+    private Instant createdAt = Instant.now();
+
+    // Set from bank.idempotency.ttl; the TTL index removes the record at this instant
+    @Indexed(name = "expires_at", expireAfter = "0s")
+    private Instant expiresAt;
+
+    // While pending: until when the node that claimed the key is presumed to still be running it
+    private Instant leaseUntil;
+
+    // Random per claim; renewals and the final write only apply for the node holding the lease
+    private String leaseOwner;
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public String getFingerprint() { return fingerprint; }
+    public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
+    public Integer getStatus() { return status; }
+    public void setStatus(Integer status) { this.status = status; }
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+    public Instant getLeaseUntil() { return leaseUntil; }
+    public void setLeaseUntil(Instant leaseUntil) { this.leaseUntil = leaseUntil; }
+    public String getLeaseOwner() { return leaseOwner; }
+    public void setLeaseOwner(String leaseOwner) { this.leaseOwner = leaseOwner; }
+}
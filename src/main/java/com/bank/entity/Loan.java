@@ -1,27 +1,37 @@
 package com.bank.entity;
 
+import com.bank.loan.LoanApplicant;
 import com.bank.loan.LoanStatus;
 import com.bank.loan.LoanType;
+import com.bank.money.Money;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
-import org.springframework.data.mongodb.core.mapping.DBRef;
 import java.math.BigDecimal;
 import java.time.Instant;
 
 @Document(collection = "loans")
+@CompoundIndex(name = "status_applied_id", def = "{'status': 1, 'applicationDate': -1, '_id': -1}")
+@CompoundIndex(name = "user_applied_id", def = "{'userId': 1, 'applicationDate': -1, '_id': -1}")
+@CompoundIndex(name = "applied_id", def = "{'applicationDate': -1, '_id': -1}")
+@CompoundIndex(name = "status_due_id", def = "{'status': 1, 'nextDueDate': 1, '_id': 1}")
+@CompoundIndex(name = "unposted_disbursed", def = "{'disbursementDate': 1}", partialFilter = "{'disbursementPosted': false}")
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class Loan {
     
     @Id
     private String id;
     
-    @DBRef
-    private User user;
+    private String userId;
+    
+    // Denormalized at application time; the user document itself is never embedded or referenced
+    private LoanApplicant applicant;
     
     private LoanType loanType;
     
-    private BigDecimal amount;
+    private Money amount;
     
     private Integer tenureMonths;
     
@@ -39,12 +49,47 @@ public class Loan {
     
     private String approvedBy;
     
+    private Instant disbursementDate;
+    
+    // False from disbursement until the credit has been applied, when the server has no transactions
+    private Boolean disbursementPosted;
+    
+    // _id of the disbursement ledger row, fixed at disbursement so a retried credit records it once
+    private String disbursementEntryId;
+    
+    // Set on disbursement; repayments reduce it
+    private Money outstandingPrincipal;
+    
+    // Interest accrued and not yet repaid, plus the sub-cent remainder carried between days
+    // (in 1/3,650,000ths of a minor unit, see InterestAccrualJob)
+    private Money accruedInterest;
+    
+    private Long accrualCarry;
+    
+    // UTC midnight of the last day interest was accrued through
+    private Instant accruedThrough;
+    
+    // Monthly installment from the amortization schedule, fixed at disbursement
+    private Money emi;
+    
+    private Integer installmentsPaid;
+    
+    // UTC midnight the next installment is due; installments are anchored to the disbursement day
+    private Instant nextDueDate;
+    
+    private Instant completedDate;
+    
+    // Bumped by every state transition; a transition only applies to the version it was decided on
+    @Version
+    private Long version;
+    
     // Constructors
     public Loan() {}
     
-    public Loan(User user, LoanType loanType, BigDecimal amount, Integer tenureMonths, 
+    public Loan(String userId, LoanApplicant applicant, LoanType loanType, Money amount, Integer tenureMonths, 
                 BigDecimal interestRate, String purpose) {
-        this.user = user;
+        this.userId = userId;
+        this.applicant = applicant;
         this.loanType = loanType;
         this.amount = amount;
         this.tenureMonths = tenureMonths;
@@ -63,12 +108,20 @@ public class Loan {
         this.id = id;
     }
     
-    public User getUser() {
-        return user;
+    public String getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+    
+    public LoanApplicant getApplicant() {
+        return applicant;
     }
     
-    public void setUser(User user) {
-        this.user = user;
+    public void setApplicant(LoanApplicant applicant) {
+        this.applicant = applicant;
     }
     
     public LoanType getLoanType() {
@@ -79,11 +132,11 @@ public class Loan {
         this.loanType = loanType;
     }
     
-    public BigDecimal getAmount() {
+    public Money getAmount() {
         return amount;
     }
     
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
     
@@ -150,4 +203,100 @@ public class Loan {
     public void setApprovedBy(String approvedBy) {
         this.approvedBy = approvedBy;
     }
+    
+    public Boolean getDisbursementPosted() {
+        return disbursementPosted;
+    }
+    
+    public void setDisbursementPosted(Boolean disbursementPosted) {
+        this.disbursementPosted = disbursementPosted;
+    }
+    
+    public String getDisbursementEntryId() {
+        return disbursementEntryId;
+    }
+    
+    public void setDisbursementEntryId(String disbursementEntryId) {
+        this.disbursementEntryId = disbursementEntryId;
+    }
+    
+    public Instant getDisbursementDate() {
+        return disbursementDate;
+    }
+    
+    public void setDisbursementDate(Instant disbursementDate) {
+        this.disbursementDate = disbursementDate;
+    }
+    
+    public Money getOutstandingPrincipal() {
+        return outstandingPrincipal;
+    }
+    
+    public void setOutstandingPrincipal(Money outstandingPrincipal) {
+        this.outstandingPrincipal = outstandingPrincipal;
+    }
+    
+    public Money getAccruedInterest() {
+        return accruedInterest;
+    }
+    
+    public void setAccruedInterest(Money accruedInterest) {
+        this.accruedInterest = accruedInterest;
+    }
+    
+    public Long getAccrualCarry() {
+        return accrualCarry;
+    }
+    
+    public void setAccrualCarry(Long accrualCarry) {
+        this.accrualCarry = accrualCarry;
+    }
+    
+    public Instant getAccruedThrough() {
+        return accruedThrough;
+    }
+    
+    public void setAccruedThrough(Instant accruedThrough) {
+        this.accruedThrough = accruedThrough;
+    }
+    
+    public Money getEmi() {
+        return emi;
+    }
+    
+    public void setEmi(Money emi) {
+        this.emi = emi;
+    }
+    
+    public Integer getInstallmentsPaid() {
+        return installmentsPaid;
+    }
+    
+    public void setInstallmentsPaid(Integer installmentsPaid) {
+        this.installmentsPaid = installmentsPaid;
+    }
+    
+    public Instant getNextDueDate() {
+        return nextDueDate;
+    }
+    
+    public void setNextDueDate(Instant nextDueDate) {
+        this.nextDueDate = nextDueDate;
+    }
+    
+    public Instant getCompletedDate() {
+        return completedDate;
+    }
+    
+    public void setCompletedDate(Instant completedDate) {
+        this.completedDate = completedDate;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
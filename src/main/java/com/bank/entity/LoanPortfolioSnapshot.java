@@ -0,0 +1,33 @@
+package com.bank.entity;
+
+import com.bank.loan.LoanStatus;
+import com.bank.loan.LoanType;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/** The last rebuilt loan portfolio totals, one cell per (status, type); served until the next rebuild lands. */
+@Document(collection = "loan_portfolio_stats")
+public class LoanPortfolioSnapshot {
+
+    public static final String ID = "portfolio";
+
+    @Id
+    private String id = ID;
+
+    private Instant takenAt;
+
+    private List<Cell> cells;
+
+    // outstanding is in minor units
+    public record Cell(LoanStatus status, LoanType loanType, long count, long tenureMonths, long outstanding) {}
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public Instant getTakenAt() { return takenAt; }
+    public void setTakenAt(Instant takenAt) { this.takenAt = takenAt; }
+    public List<Cell> getCells() { return cells; }
+    public void setCells(List<Cell> cells) { this.cells = cells; }
+}
@@ -0,0 +1,27 @@
+package com.bank.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/** The BCrypt cost calibrated by the first node to start; every node hashes with it. */
+@Document(collection = "password_policy")
+public class PasswordPolicy {
+
+    public static final String ID = "bcrypt";
+
+    @Id
+    private String id = ID;
+
+    private int cost;
+
+    private Instant calibratedAt;
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public int getCost() { return cost; }
+    public void setCost(int cost) { this.cost = cost; }
+    public Instant getCalibratedAt() { return calibratedAt; }
+    public void setCalibratedAt(Instant calibratedAt) { this.calibratedAt = calibratedAt; }
+}
@@ -1,12 +1,14 @@
 package com.bank.entity;
 
+import com.bank.money.Money;
 import com.bank.transaction.TransactionType;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
-import java.math.BigDecimal;
 import java.time.Instant;
 
 @Document(collection = "transactions")
+@CompoundIndex(name = "user_timestamp_id", def = "{'userId': 1, 'timestamp': -1, '_id': -1}")
 public class Transaction {
 
     @Id
@@ -14,24 +16,29 @@ public class Transaction {
 
     private String userId;
 
-    private BigDecimal amount;
+    private Money amount;
 
     private TransactionType type;
 
     private String description;
 
+    // Account balance right after this row was posted
+    private Money balanceAfter;
+
     private Instant timestamp = Instant.now();
 
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
     public String getUserId() { return userId; }
     public void setUserId(String userId) { this.userId = userId; }
-    public BigDecimal getAmount() { return amount; }
-    public void setAmount(BigDecimal amount) { this.amount = amount; }
+    public Money getAmount() { return amount; }
+    public void setAmount(Money amount) { this.amount = amount; }
     public TransactionType getType() { return type; }
     public void setType(TransactionType type) { this.type = type; }
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
+    public Money getBalanceAfter() { return balanceAfter; }
+    public void setBalanceAfter(Money balanceAfter) { this.balanceAfter = balanceAfter; }
     public Instant getTimestamp() { return timestamp; }
     public void setTimestamp(Instant timestamp) { this.timestamp = timestamp; }
 }
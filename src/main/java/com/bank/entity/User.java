@@ -1,11 +1,12 @@
 package com.bank.entity;
 
+import com.bank.money.Money;
 import com.bank.user.Role;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.index.Indexed;
-import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.List;
 
 @Document(collection = "users")
 public class User {
@@ -22,7 +23,7 @@ public class User {
 
     private Role role = Role.CUSTOMER;
 
-    private BigDecimal balance = BigDecimal.ZERO;
+    private Money balance = Money.ZERO;
 
     private Instant createdAt = Instant.now();
 
@@ -30,6 +31,9 @@ public class User {
 
     private Long totalTransactions = 0L;
 
+    // Loans whose disbursement credit is applied but not yet confirmed on the loan; makes a retried credit a no-op
+    private List<String> postedDisbursements;
+
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
     public String getName() { return name; }
@@ -40,14 +44,16 @@ public class User {
     public void setPasswordHash(String passwordHash) { this.passwordHash = passwordHash; }
     public Role getRole() { return role; }
     public void setRole(Role role) { this.role = role; }
-    public BigDecimal getBalance() { return balance; }
-    public void setBalance(BigDecimal balance) { this.balance = balance; }
+    public Money getBalance() { return balance; }
+    public void setBalance(Money balance) { this.balance = balance; }
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
     public Instant getLastLogin() { return lastLogin; }
     public void setLastLogin(Instant lastLogin) { this.lastLogin = lastLogin; }
     public Long getTotalTransactions() { return totalTransactions; }
     public void setTotalTransactions(Long totalTransactions) { this.totalTransactions = totalTransactions; }
+    public List<String> getPostedDisbursements() { return postedDisbursements; }
+    public void setPostedDisbursements(List<String> postedDisbursements) { this.postedDisbursements = postedDisbursements; }
 }
 
 
@@ -0,0 +1,12 @@
+package com.bank.event;
+
+import com.bank.entity.Transaction;
+import com.bank.money.Money;
+
+/** A ledger row written for {@code userId}, with the account balance right after it. */
+public record AccountEvent(String userId, Money balance, Transaction transaction) {
+
+    public static AccountEvent of(Transaction tx) {
+        return new AccountEvent(tx.getUserId(), tx.getBalanceAfter(), tx);
+    }
+}
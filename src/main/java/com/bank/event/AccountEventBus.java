@@ -0,0 +1,105 @@
+package com.bank.event;
+
+import com.bank.entity.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-process fan-out of {@link AccountEvent}s to per-user subscribers. Publishing only
+ * enqueues, so the lanes and transfers that publish never wait on a subscriber; one
+ * dispatcher thread delivers in publish order and drops events when the queue is full.
+ *
+ * <p>With {@code bank.events.source=local} (default) events come from the money-movement
+ * paths on this node. With {@code change-stream}, local publishing is off and
+ * {@link ChangeStreamEventSource} feeds every node from the {@code transactions} change
+ * stream instead, so subscribers see writes made anywhere in the cluster.
+ */
+@Component
+public class AccountEventBus {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountEventBus.class);
+
+    private final Map<String, Set<Consumer<AccountEvent>>> subscribers = new ConcurrentHashMap<>();
+    private final BlockingQueue<AccountEvent> queue;
+    private final boolean localSource;
+    private final Thread dispatcher;
+    private final Counter dropped;
+    private volatile boolean running = true;
+
+    public AccountEventBus(MeterRegistry meterRegistry,
+                           @Value("${bank.events.source:local}") String source,
+                           @Value("${bank.events.queue-capacity:10000}") int queueCapacity) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.localSource = !"change-stream".equals(source);
+        this.dropped = Counter.builder("bank.events.dropped").register(meterRegistry);
+        Gauge.builder("bank.events.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("bank.events.subscribers", subscribers, Map::size).register(meterRegistry);
+        this.dispatcher = new Thread(this::dispatchLoop, "account-events");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /** Registers {@code listener} for one user's events; run the returned handle to unsubscribe. */
+    public Runnable subscribe(String userId, Consumer<AccountEvent> listener) {
+        subscribers.computeIfAbsent(userId, id -> new CopyOnWriteArraySet<>()).add(listener);
+        return () -> subscribers.computeIfPresent(userId, (id, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    /** Called by the paths that write ledger rows; ignored when events come from the change stream. */
+    public void publishLocal(List<Transaction> txs) {
+        if (!localSource) return;
+        for (Transaction tx : txs) publish(AccountEvent.of(tx));
+    }
+
+    public void publish(AccountEvent event) {
+        // Nobody is watching this account on this node; skip the queue entirely
+        if (!subscribers.containsKey(event.userId())) return;
+        if (!queue.offer(event)) dropped.increment();
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            AccountEvent event;
+            try {
+                event = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (event == null) continue;
+            Set<Consumer<AccountEvent>> listeners = subscribers.get(event.userId());
+            if (listeners == null) continue;
+            for (Consumer<AccountEvent> listener : listeners) {
+                try {
+                    listener.accept(event);
+                } catch (RuntimeException e) {
+                    log.warn("Account event listener failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        dispatcher.join(TimeUnit.SECONDS.toMillis(1));
+    }
+}
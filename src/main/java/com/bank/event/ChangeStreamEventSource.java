@@ -0,0 +1,83 @@
+package com.bank.event;
+
+import com.bank.entity.Transaction;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds {@link AccountEventBus} from the change stream of {@code transactions}, so every node
+ * sees ledger rows written by any node (or shipped later by the journal). Needs a replica set
+ * or sharded cluster. The stream resumes from the last seen token after an error.
+ */
+@Component
+@ConditionalOnProperty(name = "bank.events.source", havingValue = "change-stream")
+public class ChangeStreamEventSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeStreamEventSource.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final AccountEventBus bus;
+    private final Thread watcher;
+    private volatile boolean running = true;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+
+    public ChangeStreamEventSource(MongoTemplate mongoTemplate, AccountEventBus bus) {
+        this.mongoTemplate = mongoTemplate;
+        this.bus = bus;
+        this.watcher = new Thread(this::watchLoop, "account-events-change-stream");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchLoop() {
+        BsonDocument resumeToken = null;
+        long backoffMillis = 100;
+        while (running) {
+            var stream = mongoTemplate.getCollection("transactions")
+                    .watch(List.of(Aggregates.match(Filters.eq("operationType", "insert"))));
+            if (resumeToken != null) stream = stream.resumeAfter(resumeToken);
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> opened = stream.cursor()) {
+                cursor = opened;
+                backoffMillis = 100;
+                while (running) {
+                    ChangeStreamDocument<Document> change = opened.tryNext();
+                    if (change == null) continue;
+                    resumeToken = change.getResumeToken();
+                    Document inserted = change.getFullDocument();
+                    if (inserted == null) continue;
+                    bus.publish(AccountEvent.of(mongoTemplate.getConverter().read(Transaction.class, inserted)));
+                }
+            } catch (RuntimeException e) {
+                if (!running) return;
+                log.warn("Transaction change stream failed, reopening: {}", e.getMessage());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(backoffMillis);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, 5_000);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        var open = cursor;
+        if (open != null) open.close();
+        watcher.join(TimeUnit.SECONDS.toMillis(2));
+    }
+}
@@ -0,0 +1,103 @@
+package com.bank.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One fixed-size, memory-mapped journal file. Records are laid out as
+ * {@code [int length][int crc32c][payload]}; a zero length (the file is pre-sized
+ * with zeros) or a checksum mismatch marks the end of valid data.
+ */
+final class JournalSegment implements Closeable {
+
+    static final int HEADER_BYTES = 8;
+
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private boolean closed;
+
+    private JournalSegment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static JournalSegment open(Path dir, long id, int size) throws IOException {
+        Path path = pathFor(dir, id);
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new JournalSegment(id, path, channel, buffer);
+    }
+
+    static Path pathFor(Path dir, long id) {
+        return dir.resolve(String.format("segment-%020d.log", id));
+    }
+
+    static long idOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()));
+    }
+
+    long id() { return id; }
+
+    Path path() { return path; }
+
+    int position() { return buffer.position(); }
+
+    /** Appends one record and returns the offset just past it, or -1 if the segment is full. */
+    int append(byte[] payload) {
+        if (buffer.remaining() < HEADER_BYTES + payload.length) return -1;
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        return buffer.position();
+    }
+
+    // Under the segment's lock, so a flusher holding a segment that just rolled cannot race its close
+    synchronized void force() {
+        if (!closed) buffer.force();
+    }
+
+    /**
+     * Visits every intact record starting at {@code from}, leaves the write position just past
+     * the last one and returns it. A torn tail from a crash is simply not visited.
+     */
+    int recover(int from, RecordVisitor visitor) {
+        int offset = from;
+        while (offset + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > buffer.capacity()) break;
+            byte[] payload = new byte[length];
+            buffer.get(offset + HEADER_BYTES, payload);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) break;
+            offset += HEADER_BYTES + length;
+            visitor.visit(payload, offset);
+        }
+        buffer.position(offset);
+        return offset;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(byte[] payload, int endOffset);
+    }
+}
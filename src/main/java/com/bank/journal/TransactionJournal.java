@@ -0,0 +1,350 @@
+package com.bank.journal;
+
+import com.bank.entity.Transaction;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.InsertManyOptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Local write-ahead journal for ledger rows. {@link #append} returns once the record is
+ * durable on local disk; a flusher thread forces the mapped segment for everything appended
+ * since its last pass (group commit), and a shipper thread bulk-inserts journaled rows into
+ * {@code transactions}, checkpointing how far it got. On startup every record past the
+ * checkpoint is shipped again; ids are assigned before journaling, so re-shipping a row that
+ * already reached Mongo is a harmless duplicate-key error. A row Mongo keeps rejecting is
+ * moved to {@code dead-letter.bson} in the journal directory after
+ * {@code bank.journal.max-ship-attempts} attempts, so it cannot hold up the rows behind it;
+ * {@code bank.journal.dead-lettered} counts them for alerting.
+ */
+@Component
+@ConditionalOnProperty(name = "bank.journal.enabled", havingValue = "true")
+public class TransactionJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionJournal.class);
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final Codec<Document> codec = MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+    private final Path dir;
+    private final int segmentBytes;
+    private final int shipBatch;
+    private final int maxShipAttempts;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durableAdvanced = durableLock.newCondition();
+    private final LinkedBlockingQueue<Journaled> unshipped = new LinkedBlockingQueue<>();
+
+    private JournalSegment active;
+    private long retainedFrom;
+    private volatile long appendedSeq;
+    private volatile long durableSeq;
+    private volatile boolean running = true;
+
+    private final Thread flusher;
+    private final Thread shipper;
+    private final Timer commitTimer;
+    private final Counter shippedCounter;
+    private final Counter deadLettered;
+
+    public TransactionJournal(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+                              @Value("${bank.journal.dir:data/journal}") String dir,
+                              @Value("${bank.journal.segment-bytes:67108864}") int segmentBytes,
+                              @Value("${bank.journal.ship-batch:1000}") int shipBatch,
+                              @Value("${bank.journal.max-ship-attempts:10}") int maxShipAttempts) throws IOException {
+        this.mongoTemplate = mongoTemplate;
+        this.dir = Path.of(dir);
+        this.segmentBytes = segmentBytes;
+        this.shipBatch = shipBatch;
+        this.maxShipAttempts = Math.max(1, maxShipAttempts);
+        this.commitTimer = Timer.builder("bank.journal.commit").publishPercentiles(0.5, 0.99).register(meterRegistry);
+        this.shippedCounter = Counter.builder("bank.journal.shipped").register(meterRegistry);
+        this.deadLettered = Counter.builder("bank.journal.dead-lettered").register(meterRegistry);
+        Gauge.builder("bank.journal.unshipped", unshipped, LinkedBlockingQueue::size).register(meterRegistry);
+
+        Files.createDirectories(this.dir);
+        this.active = recover();
+        this.flusher = new Thread(this::flushLoop, "journal-flusher");
+        this.shipper = new Thread(this::shipLoop, "journal-shipper");
+        flusher.setDaemon(true);
+        shipper.setDaemon(true);
+        flusher.start();
+        shipper.start();
+    }
+
+    /** Journals the row and blocks until it is durable locally; it reaches Mongo shortly after. */
+    public void append(Transaction tx) {
+        appendAll(List.of(tx));
+    }
+
+    /** Journals the rows in order and waits for a single commit covering all of them. */
+    public void appendAll(List<Transaction> txs) {
+        if (!running) throw new IllegalStateException("Journal is shut down");
+        List<Document> documents = new ArrayList<>(txs.size());
+        List<byte[]> payloads = new ArrayList<>(txs.size());
+        for (Transaction tx : txs) {
+            if (tx.getId() == null) tx.setId(new ObjectId().toHexString());
+            Document document = new Document();
+            mongoTemplate.getConverter().write(tx, document);
+            documents.add(document);
+            payloads.add(toBytes(document));
+        }
+
+        long start = System.nanoTime();
+        long seq;
+        appendLock.lock();
+        try {
+            for (int i = 0; i < payloads.size(); i++) {
+                int end = active.append(payloads.get(i));
+                if (end < 0) {
+                    roll();
+                    end = active.append(payloads.get(i));
+                    if (end < 0) throw new IllegalArgumentException("Record larger than a journal segment");
+                }
+                unshipped.add(new Journaled(documents.get(i), active.id(), end));
+            }
+            appendedSeq += payloads.size();
+            seq = appendedSeq;
+        } finally {
+            appendLock.unlock();
+        }
+        LockSupport.unpark(flusher);
+        awaitDurable(seq);
+        commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // Called with appendLock held: make the full segment durable, then continue in a fresh one
+    private void roll() {
+        active.force();
+        durableLock.lock();
+        try {
+            durableSeq = appendedSeq;
+            durableAdvanced.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+        try {
+            active.close();
+            active = JournalSegment.open(dir, active.id() + 1, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void awaitDurable(long seq) {
+        durableLock.lock();
+        try {
+            while (durableSeq < seq) {
+                durableAdvanced.awaitUninterruptibly();
+            }
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (running || durableSeq < appendedSeq) {
+            JournalSegment segment;
+            long target;
+            appendLock.lock();
+            try {
+                segment = active;
+                target = appendedSeq;
+            } finally {
+                appendLock.unlock();
+            }
+            if (target == durableSeq) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            // Everything appended up to target is in this segment or in one forced when it rolled
+            segment.force();
+            durableLock.lock();
+            try {
+                if (target > durableSeq) durableSeq = target;
+                durableAdvanced.signalAll();
+            } finally {
+                durableLock.unlock();
+            }
+        }
+    }
+
+    private void shipLoop() {
+        List<Journaled> batch = new ArrayList<>(shipBatch);
+        while (running || !unshipped.isEmpty()) {
+            try {
+                Journaled first = unshipped.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                unshipped.drainTo(batch, shipBatch - 1);
+                shipWithRetry(batch);
+                Journaled last = batch.get(batch.size() - 1);
+                writeCheckpoint(last.segmentId(), last.endOffset());
+                if (last.segmentId() > retainedFrom) {
+                    deleteSegmentsBefore(last.segmentId());
+                    retainedFrom = last.segmentId();
+                }
+                shippedCounter.increment(batch.size());
+                batch.clear();
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                log.error("Journal dead-letter or checkpoint write failed; the batch is shipped again", e);
+            }
+        }
+    }
+
+    /*
+     * Unordered, so one bad row does not stop the rest. Rows shipped before a crash come back as
+     * duplicates and count as shipped; rows rejected for any other reason are retried alone,
+     * and dead-lettered once rejected maxShipAttempts times. A failure of the whole call (Mongo
+     * unreachable) is retried for as long as it lasts.
+     */
+    private void shipWithRetry(List<Journaled> batch) throws InterruptedException, IOException {
+        List<Document> documents = new ArrayList<>(batch.size());
+        for (Journaled journaled : batch) documents.add(journaled.document());
+        long backoffMillis = 100;
+        int rejections = 0;
+        while (true) {
+            try {
+                mongoTemplate.getCollection("transactions").insertMany(documents, new InsertManyOptions().ordered(false));
+                return;
+            } catch (MongoBulkWriteException e) {
+                List<Document> rejected = new ArrayList<>();
+                for (var error : e.getWriteErrors()) {
+                    if (error.getCode() != DUPLICATE_KEY) rejected.add(documents.get(error.getIndex()));
+                }
+                if (rejected.isEmpty()) return;
+                documents = rejected;
+                if (++rejections >= maxShipAttempts) {
+                    deadLetter(rejected, e.getMessage());
+                    return;
+                }
+                log.warn("Journal shipment rejected {} rows, retrying: {}", rejected.size(), e.getMessage());
+            } catch (RuntimeException e) {
+                log.warn("Journal shipment failed, retrying: {}", e.getMessage());
+            }
+            TimeUnit.MILLISECONDS.sleep(backoffMillis);
+            backoffMillis = Math.min(backoffMillis * 2, 5_000);
+        }
+    }
+
+    // Appended and forced before the checkpoint moves past the rows, so they survive in one place or the other
+    private void deadLetter(List<Document> documents, String reason) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve("dead-letter.bson"), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            for (Document document : documents) channel.write(ByteBuffer.wrap(toBytes(document)));
+            channel.force(true);
+        }
+        deadLettered.increment(documents.size());
+        log.error("Moved {} ledger rows Mongo rejected {} times to {}: {}", documents.size(), maxShipAttempts,
+                dir.resolve("dead-letter.bson"), reason);
+    }
+
+    // Replays every record past the checkpoint into the ship queue and opens a fresh segment
+    private JournalSegment recover() throws IOException {
+        long[] checkpoint = readCheckpoint();
+        retainedFrom = checkpoint[0];
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(dir)) {
+            segments = files.filter(p -> p.getFileName().toString().startsWith("segment-"))
+                    .sorted()
+                    .toList();
+        }
+        long nextId = 0;
+        int replayed = 0;
+        for (Path file : segments) {
+            long id = JournalSegment.idOf(file);
+            nextId = Math.max(nextId, id + 1);
+            if (id < checkpoint[0]) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            try (JournalSegment segment = JournalSegment.open(dir, id, segmentBytes)) {
+                int from = id == checkpoint[0] ? (int) checkpoint[1] : 0;
+                int[] count = {0};
+                segment.recover(from, (payload, end) -> {
+                    unshipped.add(new Journaled(new RawBsonDocument(payload).decode(codec), id, end));
+                    count[0]++;
+                });
+                replayed += count[0];
+            }
+        }
+        if (replayed > 0) log.info("Replaying {} journaled transactions not yet shipped", replayed);
+        return JournalSegment.open(dir, nextId, segmentBytes);
+    }
+
+    private long[] readCheckpoint() throws IOException {
+        Path file = dir.resolve("checkpoint");
+        if (!Files.exists(file)) return new long[] {0, 0};
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        return new long[] {buffer.getLong(), buffer.getLong()};
+    }
+
+    private void writeCheckpoint(long segmentId, int offset) throws IOException {
+        Path tmp = dir.resolve("checkpoint.tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(16).putLong(segmentId).putLong(offset).flip());
+            channel.force(true);
+        }
+        Files.move(tmp, dir.resolve("checkpoint"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void deleteSegmentsBefore(long segmentId) throws IOException {
+        for (long id = retainedFrom; id < segmentId; id++) {
+            Files.deleteIfExists(JournalSegment.pathFor(dir, id));
+        }
+    }
+
+    private byte[] toBytes(Document document) {
+        ByteBuffer bytes = new RawBsonDocument(document, codec).getByteBuffer().asNIO();
+        byte[] payload = new byte[bytes.remaining()];
+        bytes.get(payload);
+        return payload;
+    }
+
+    // Let pending appends become durable and the backlog drain before the context goes away
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+        shipper.join(TimeUnit.SECONDS.toMillis(30));
+        active.close();
+    }
+
+    private record Journaled(Document document, long segmentId, int endOffset) {}
+}
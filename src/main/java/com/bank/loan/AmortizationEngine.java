@@ -0,0 +1,119 @@
+package com.bank.loan;
+
+import com.bank.money.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * EMI schedules in fixed point. The annual rate is taken in basis points and every amount is
+ * a long count of minor units: monthly interest is {@code balance * bps / 120000} rounded half
+ * up, the EMI is rounded to the cent and the last installment absorbs the rounding remainder.
+ * Only the EMI itself needs a power, done once in double. Schedules are pure functions of
+ * (principal, tenure, rate) and most applications use a {@link LoanType} default rate, so
+ * they are kept in a bounded FIFO cache.
+ */
+@Component
+public class AmortizationEngine {
+
+    public static final int MAX_TENURE_MONTHS = 600;
+    private static final long MONTHLY_BPS_DIVISOR = 12 * 10_000;
+
+    private final int maxEntries;
+    private final Map<Key, LoanSchedule> cache = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Key> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public AmortizationEngine(MeterRegistry meterRegistry,
+                              @Value("${bank.loans.schedule-cache.max-entries:10000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.hits = Counter.builder("bank.loans.schedule.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("bank.loans.schedule.cache").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("bank.loans.schedule.cache.size", cache, Map::size).register(meterRegistry);
+    }
+
+    public LoanSchedule schedule(Money principal, int tenureMonths, BigDecimal annualRate) {
+        if (principal == null || principal.signum() <= 0) throw new IllegalArgumentException("Amount must be positive");
+        if (tenureMonths < 1 || tenureMonths > MAX_TENURE_MONTHS) {
+            throw new IllegalArgumentException("Tenure must be between 1 and " + MAX_TENURE_MONTHS + " months");
+        }
+        Key key = new Key(principal.minorUnits(), tenureMonths, toBasisPoints(annualRate));
+        LoanSchedule cached = cache.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        LoanSchedule computed = compute(key);
+        if (cache.putIfAbsent(key, computed) == null) {
+            insertionOrder.add(key);
+            while (cache.size() > maxEntries) {
+                Key oldest = insertionOrder.poll();
+                if (oldest == null) break;
+                cache.remove(oldest);
+            }
+        }
+        return computed;
+    }
+
+    static long toBasisPoints(BigDecimal annualRate) {
+        if (annualRate == null || annualRate.signum() < 0) throw new IllegalArgumentException("Interest rate must not be negative");
+        try {
+            return annualRate.movePointRight(2).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Interest rate out of range");
+        }
+    }
+
+    private static LoanSchedule compute(Key key) {
+        long principal = key.principalMinor();
+        int n = key.tenureMonths();
+        long bps = key.rateBps();
+        long emi = emi(principal, n, bps);
+
+        List<LoanSchedule.Installment> installments = new ArrayList<>(n);
+        long balance = principal;
+        long totalInterest = 0;
+        try {
+            for (int month = 1; month <= n; month++) {
+                long interest = monthlyInterest(balance, bps);
+                long principalPart = month == n ? balance : Math.min(balance, Math.max(0, emi - interest));
+                long payment = Math.addExact(principalPart, interest);
+                balance -= principalPart;
+                totalInterest = Math.addExact(totalInterest, interest);
+                installments.add(new LoanSchedule.Installment(month, Money.ofMinor(payment),
+                        Money.ofMinor(principalPart), Money.ofMinor(interest), Money.ofMinor(balance)));
+            }
+            return new LoanSchedule(Money.ofMinor(principal), n, BigDecimal.valueOf(bps, 2), Money.ofMinor(emi),
+                    Money.ofMinor(totalInterest), Money.ofMinor(Math.addExact(principal, totalInterest)),
+                    List.copyOf(installments));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount too large");
+        }
+    }
+
+    // P*r / (1 - (1 + r)^-n), with (1 + r)^n - 1 taken through expm1/log1p to keep precision at low rates
+    private static long emi(long principal, int n, long bps) {
+        if (bps == 0) return (principal + n - 1) / n;
+        double r = (double) bps / MONTHLY_BPS_DIVISOR;
+        double growth = Math.expm1(n * Math.log1p(r));
+        return Math.round(principal * r * (growth + 1) / growth);
+    }
+
+    private static long monthlyInterest(long balance, long bps) {
+        return (Math.multiplyExact(balance, bps) + MONTHLY_BPS_DIVISOR / 2) / MONTHLY_BPS_DIVISOR;
+    }
+
+    private record Key(long principalMinor, int tenureMonths, long rateBps) {}
+}
@@ -0,0 +1,58 @@
+package com.bank.loan;
+
+import com.bank.service.LoanRepaymentService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes the day's EMIs once a day at {@code bank.loans.auto-debit.run-at} (UTC), after the
+ * interest accrual so each installment sees that day's interest. A run needs no checkpoint:
+ * an installment is only taken while the loan's due date is still the one that was read, so
+ * running a day again, or on two nodes, takes each installment once.
+ */
+@Component
+@ConditionalOnProperty(name = "bank.loans.auto-debit.enabled", havingValue = "true", matchIfMissing = true)
+public class AutoDebitJob {
+
+    private static final Logger log = LoggerFactory.getLogger(AutoDebitJob.class);
+
+    private final LoanRepaymentService repayments;
+    private final LocalTime runAt;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "loan-auto-debit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AutoDebitJob(LoanRepaymentService repayments,
+                        @Value("${bank.loans.auto-debit.run-at:02:00}") LocalTime runAt) {
+        this.repayments = repayments;
+        this.runAt = runAt;
+        scheduler.schedule(this::scheduleNext, InterestAccrualJob.delayUntil(runAt), TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleNext() {
+        try {
+            repayments.autoDebit(LocalDate.now(ZoneOffset.UTC));
+        } catch (RuntimeException e) {
+            log.error("Loan auto-debit run failed; loans still due are picked up by the next run", e);
+        }
+        scheduler.schedule(this::scheduleNext, InterestAccrualJob.delayUntil(runAt), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
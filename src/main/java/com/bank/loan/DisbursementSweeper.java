@@ -0,0 +1,58 @@
+package com.bank.loan;
+
+import com.bank.service.LoanService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts standalone disbursements whose credit did not land with the approval: a saturated
+ * lane, a failed write or a crash between the DISBURSED transition and the credit. Only
+ * loans older than one interval are taken, so a credit still in its lane is left alone, and
+ * each credit is idempotent, so two nodes sweeping the same loan credit it once.
+ */
+@Component
+public class DisbursementSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(DisbursementSweeper.class);
+    private static final int BATCH = 500;
+
+    private final LoanService loanService;
+    private final Duration interval;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "loan-disbursement-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DisbursementSweeper(LoanService loanService,
+                               @Value("${bank.loans.disbursement-sweep.interval:1m}") Duration interval) {
+        this.loanService = loanService;
+        this.interval = interval;
+        scheduler.scheduleWithFixedDelay(this::sweep, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void sweep() {
+        try {
+            int posted;
+            do {
+                posted = loanService.postPendingDisbursements(interval, BATCH);
+                if (posted > 0) log.info("Posted {} deferred loan disbursements", posted);
+            } while (posted == BATCH);
+        } catch (RuntimeException e) {
+            log.error("Disbursement sweep failed; retrying next interval", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
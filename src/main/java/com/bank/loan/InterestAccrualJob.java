@@ -0,0 +1,262 @@
+package com.bank.loan;
+
+import com.bank.entity.AccrualRun;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nightly simple-interest accrual over disbursed loans. Each run accrues every loan through
+ * today (UTC) in {@code _id} order, a chunk at a time: the chunk is read raw, accrual is
+ * computed on a fork-join pool and written as one unordered bulkWrite while the next chunk is
+ * read. After each write the run's checkpoint in {@code loan_accrual_runs} moves to the last
+ * id, so a restarted run resumes there.
+ *
+ * <p>Accrual is fixed point: {@code outstanding * bps * days + carry} split into whole minor
+ * units and a remainder over 3,650,000 (bps per unit times days per year) that is carried to
+ * the next day, so nothing is lost to rounding. A missed night is caught up by the next
+ * run. Every write is conditional on the {@code accruedThrough} it was computed from, so a
+ * chunk written twice, or by two nodes, accrues once; interest is added with $inc so it never
+ * overwrites a concurrent repayment.
+ */
+@Component
+@ConditionalOnProperty(name = "bank.loans.accrual.enabled", havingValue = "true", matchIfMissing = true)
+public class InterestAccrualJob {
+
+    private static final Logger log = LoggerFactory.getLogger(InterestAccrualJob.class);
+    static final long CARRY_DENOMINATOR = 10_000L * 365;
+
+    private final MongoTemplate mongoTemplate;
+    private final int chunkSize;
+    private final LocalTime runAt;
+    private final ForkJoinPool pool;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> daemon(r, "loan-accrual-writer"));
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "loan-accrual"));
+    private final Timer chunkTimer;
+    private final Counter accrued;
+    private final AtomicLong lastRunLoansPerSecond = new AtomicLong();
+
+    public InterestAccrualJob(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+                              @Value("${bank.loans.accrual.chunk-size:5000}") int chunkSize,
+                              @Value("${bank.loans.accrual.parallelism:0}") int parallelism,
+                              @Value("${bank.loans.accrual.run-at:01:00}") LocalTime runAt) {
+        this.mongoTemplate = mongoTemplate;
+        this.chunkSize = chunkSize;
+        this.runAt = runAt;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.chunkTimer = Timer.builder("bank.loans.accrual.chunk").publishPercentiles(0.5, 0.99).register(meterRegistry);
+        this.accrued = Counter.builder("bank.loans.accrual.loans").register(meterRegistry);
+        Gauge.builder("bank.loans.accrual.throughput", lastRunLoansPerSecond, AtomicLong::get)
+                .baseUnit("loans/s")
+                .register(meterRegistry);
+        // An interrupted run is resumed right away; the next one waits for its time slot
+        scheduler.execute(this::resumeInterrupted);
+        scheduler.schedule(this::scheduleNext, delayUntil(runAt), TimeUnit.MILLISECONDS);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // Milliseconds until the next occurrence of runAt, UTC
+    static long delayUntil(LocalTime runAt) {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        ZonedDateTime next = now.with(runAt).truncatedTo(ChronoUnit.MINUTES);
+        if (!next.isAfter(now)) next = next.plusDays(1);
+        return Duration.between(now, next).toMillis();
+    }
+
+    private void scheduleNext() {
+        runSafely();
+        scheduler.schedule(this::scheduleNext, delayUntil(runAt), TimeUnit.MILLISECONDS);
+    }
+
+    private void resumeInterrupted() {
+        try {
+            for (AccrualRun run : mongoTemplate.find(Query.query(Criteria.where("completed").is(false)), AccrualRun.class)) {
+                log.info("Resuming loan accrual run for {} after {}", run.getId(), run.getLastLoanId());
+                run(LocalDate.parse(run.getId()));
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not resume loan accrual", e);
+        }
+    }
+
+    private void runSafely() {
+        try {
+            run(LocalDate.now(ZoneOffset.UTC));
+        } catch (RuntimeException e) {
+            log.error("Loan accrual run failed; it resumes from its checkpoint on the next attempt", e);
+        }
+    }
+
+    /** Accrues every disbursed loan through {@code day}, resuming that day's run if it was interrupted. */
+    public void run(LocalDate day) {
+        AccrualRun state = claim(day);
+        if (state.isCompleted()) return;
+        Instant through = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+        MongoCollection<Document> loans = mongoTemplate.getCollection("loans");
+        long started = System.nanoTime();
+        long total = 0;
+
+        ObjectId after = state.getLastLoanId() != null ? new ObjectId(state.getLastLoanId()) : null;
+        CompletableFuture<Void> pendingWrite = CompletableFuture.completedFuture(null);
+        while (true) {
+            long chunkStart = System.nanoTime();
+            List<Document> chunk = readChunk(loans, after);
+            if (chunk.isEmpty()) break;
+            List<UpdateOneModel<Document>> writes = pool.submit(() -> chunk.parallelStream()
+                    .map(loan -> accrue(loan, through))
+                    .filter(update -> update != null)
+                    .toList()).join();
+            ObjectId last = chunk.get(chunk.size() - 1).getObjectId("_id");
+            // One write in flight: the checkpoint only ever moves past chunks that are on disk
+            pendingWrite.join();
+            pendingWrite = CompletableFuture.runAsync(() -> {
+                if (!writes.isEmpty()) loans.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+                checkpoint(day, last, writes.size());
+                accrued.increment(writes.size());
+                chunkTimer.record(System.nanoTime() - chunkStart, TimeUnit.NANOSECONDS);
+            }, writer);
+            total += writes.size();
+            after = last;
+        }
+        pendingWrite.join();
+
+        long elapsedNanos = System.nanoTime() - started;
+        lastRunLoansPerSecond.set(elapsedNanos > 0 ? total * 1_000_000_000L / elapsedNanos : 0);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(day.toString())),
+                new Update().set("completed", true).set("finishedAt", Instant.now()), AccrualRun.class);
+        log.info("Accrued interest on {} loans through {} in {} ms ({} loans/s)", total, day,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), lastRunLoansPerSecond.get());
+    }
+
+    private AccrualRun claim(LocalDate day) {
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(day.toString())),
+                new Update().setOnInsert("startedAt", Instant.now()).setOnInsert("completed", false),
+                FindAndModifyOptions.options().upsert(true).returnNew(true), AccrualRun.class);
+    }
+
+    private List<Document> readChunk(MongoCollection<Document> loans, ObjectId after) {
+        Bson filter = Filters.eq("status", LoanStatus.DISBURSED.name());
+        if (after != null) filter = Filters.and(Filters.gt("_id", after), filter);
+        return loans.find(filter)
+                .projection(Projections.include("amount", "outstandingPrincipal", "interestRate", "loanType",
+                        "accrualCarry", "accruedThrough", "disbursementDate", "approvalDate"))
+                .sort(Sorts.ascending("_id"))
+                .limit(chunkSize)
+                .into(new ArrayList<>(chunkSize));
+    }
+
+    private void checkpoint(LocalDate day, ObjectId last, int count) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(day.toString())),
+                new Update().set("lastLoanId", last.toHexString()).inc("loansAccrued", (long) count), AccrualRun.class);
+    }
+
+    // Null when the loan is already accrued through the day or has nothing to accrue
+    static UpdateOneModel<Document> accrue(Document loan, Instant through) {
+        Date seen = loan.getDate("accruedThrough");
+        Instant from = seen != null ? seen.toInstant() : startOf(loan);
+        long days = ChronoUnit.DAYS.between(from.truncatedTo(ChronoUnit.DAYS), through);
+        if (days <= 0) return null;
+
+        Long outstanding = longOf(loan, "outstandingPrincipal");
+        if (outstanding == null) outstanding = longOf(loan, "amount");
+        long bps = rateBasisPoints(loan);
+        if (outstanding == null || outstanding <= 0 || bps <= 0) {
+            return new UpdateOneModel<>(Filters.and(Filters.eq("_id", loan.get("_id")), Filters.eq("accruedThrough", seen)),
+                    Updates.set("accruedThrough", Date.from(through)));
+        }
+        Long carry = longOf(loan, "accrualCarry");
+        long numerator;
+        try {
+            numerator = Math.addExact(Math.multiplyExact(Math.multiplyExact(outstanding, bps), days),
+                    carry != null ? carry : 0L);
+        } catch (ArithmeticException e) {
+            log.warn("Skipping accrual for loan {}: amount out of range", loan.get("_id"));
+            return null;
+        }
+        return new UpdateOneModel<>(
+                Filters.and(Filters.eq("_id", loan.get("_id")), Filters.eq("accruedThrough", seen)),
+                Updates.combine(
+                        Updates.inc("accruedInterest", numerator / CARRY_DENOMINATOR),
+                        Updates.set("accrualCarry", numerator % CARRY_DENOMINATOR),
+                        Updates.set("accruedThrough", Date.from(through))));
+    }
+
+    private static Long longOf(Document loan, String field) {
+        return loan.get(field) instanceof Number number ? number.longValue() : null;
+    }
+
+    private static Instant startOf(Document loan) {
+        Date disbursed = loan.getDate("disbursementDate");
+        if (disbursed != null) return disbursed.toInstant();
+        Date approved = loan.getDate("approvalDate");
+        return approved != null ? approved.toInstant() : Instant.now();
+    }
+
+    private static long rateBasisPoints(Document loan) {
+        Object rate = loan.get("interestRate");
+        BigDecimal annual;
+        if (rate instanceof Decimal128 decimal) annual = decimal.bigDecimalValue();
+        else if (rate instanceof Number number) annual = new BigDecimal(number.toString());
+        else if (rate instanceof String text) annual = new BigDecimal(text);
+        else {
+            String type = loan.getString("loanType");
+            if (type == null) return 0;
+            annual = BigDecimal.valueOf(LoanType.valueOf(type).getDefaultInterestRate());
+        }
+        return AmortizationEngine.toBasisPoints(annual);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        writer.shutdown();
+        pool.shutdown();
+    }
+}
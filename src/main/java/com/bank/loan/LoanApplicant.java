@@ -0,0 +1,7 @@
+package com.bank.loan;
+
+/**
+ * Who applied for a loan, copied onto the loan when it is created so loan lists render
+ * without touching {@code users}. Refreshed from the user near-cache for admin screens.
+ */
+public record LoanApplicant(String name, String email) {}
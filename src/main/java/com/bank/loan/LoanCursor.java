@@ -0,0 +1,29 @@
+package com.bank.loan;
+
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position in a loan queue: the (applicationDate, _id) of the last loan
+ * returned. The next page starts strictly after it in (applicationDate desc, _id desc) order.
+ */
+public record LoanCursor(Instant applicationDate, ObjectId id) {
+
+    public String encode() {
+        String raw = applicationDate.toEpochMilli() + ":" + id.toHexString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static LoanCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int sep = raw.indexOf(':');
+            return new LoanCursor(Instant.ofEpochMilli(Long.parseLong(raw.substring(0, sep))), new ObjectId(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
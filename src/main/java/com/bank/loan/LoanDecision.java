@@ -0,0 +1,6 @@
+package com.bank.loan;
+
+public enum LoanDecision {
+    APPROVE,
+    REJECT
+}
@@ -0,0 +1,12 @@
+package com.bank.loan;
+
+import com.bank.money.Money;
+
+import java.time.Instant;
+
+/**
+ * Optional constraints on a loan queue; null fields are not applied. {@code status} or
+ * {@code userId} select the leading index field, the rest filter within that range.
+ */
+public record LoanFilter(LoanStatus status, LoanType loanType, Money minAmount, Money maxAmount,
+                         Instant from, Instant to, String userId) {}
@@ -0,0 +1,311 @@
+package com.bank.loan;
+
+import com.bank.dto.LoanPortfolio;
+import com.bank.entity.Loan;
+import com.bank.entity.LoanPortfolioSnapshot;
+import com.bank.money.Money;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loan portfolio aggregates kept in memory: count, total tenure and outstanding principal
+ * per (status, type) cell, each a {@link LongAdder} so concurrent transitions never contend.
+ * Every applied, decided, disbursed, repaid or completed loan moves its cell totals as the
+ * change commits, and {@link #portfolio()} reads the fixed grid of cells, however large the
+ * loan book.
+ *
+ * <p>The grid is rebuilt from one $group aggregation over {@code loans} every
+ * {@code bank.loans.stats.rebuild-interval}. That brings in transitions made on other nodes
+ * and settles any drift. Changes applied here while the aggregation runs are carried over
+ * onto the rebuilt grid, so none is lost. A change the aggregation had already seen is
+ * counted twice until the next rebuild.
+ *
+ * <p>Each rebuild is saved to {@code loan_portfolio_stats}. A starting node serves that
+ * snapshot and rebuilds one interval after it was taken, or at once if there is none.
+ */
+@Component
+public class LoanPortfolioStats {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanPortfolioStats.class);
+    private static final LoanStatus[] STATUSES = LoanStatus.values();
+    private static final LoanType[] TYPES = LoanType.values();
+
+    private final MongoTemplate mongoTemplate;
+    private final long rebuildMillis;
+    private final Timer rebuildTimer;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "loan-portfolio-stats");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Grid grid = new Grid(null);
+
+    public LoanPortfolioStats(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+                              @Value("${bank.loans.stats.rebuild-interval:15m}") Duration rebuildInterval) {
+        this.mongoTemplate = mongoTemplate;
+        this.rebuildMillis = rebuildInterval.toMillis();
+        this.rebuildTimer = Timer.builder("bank.loans.stats.rebuild").register(meterRegistry);
+    }
+
+    // After CommandLineRunners, so the first rebuild sees migrated loans
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.execute(() -> {
+            Instant takenAt = restore();
+            long delay = takenAt == null ? 0
+                    : Math.max(0, Duration.between(Instant.now(), takenAt.plusMillis(rebuildMillis)).toMillis());
+            scheduler.scheduleWithFixedDelay(this::rebuildQuietly, delay, rebuildMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /** A new application. */
+    public void applied(Loan loan) {
+        Cell cell = grid.cell(loan.getStatus(), loan.getLoanType());
+        if (cell != null) cell.add(1, loan, 0);
+    }
+
+    /** A committed state change; {@code loan} is the document after it. */
+    public void moved(Loan loan, LoanStatus from, LoanStatus to) {
+        Grid current = grid;
+        Cell source = current.cell(from, loan.getLoanType());
+        Cell target = current.cell(to, loan.getLoanType());
+        if (source != null) source.add(-1, loan, 0);
+        // Outstanding principal leaves a loan through repayments, so it is only ever added here
+        if (target != null) target.add(1, loan, to == LoanStatus.DISBURSED ? minor(loan.getOutstandingPrincipal()) : 0);
+    }
+
+    /** Principal paid down on a disbursed loan. */
+    public void repaid(Loan loan, Money principal) {
+        Cell cell = grid.cell(LoanStatus.DISBURSED, loan.getLoanType());
+        if (cell != null) cell.outstanding.add(-principal.minorUnits());
+    }
+
+    public LoanPortfolio portfolio() {
+        Grid current = grid;
+        Map<LoanStatus, Long> byStatus = new EnumMap<>(LoanStatus.class);
+        Map<LoanType, Long> byType = new EnumMap<>(LoanType.class);
+        Map<LoanType, Money> exposure = new EnumMap<>(LoanType.class);
+        Map<LoanType, BigDecimal> tenureByType = new EnumMap<>(LoanType.class);
+        long[] typeTenure = new long[TYPES.length];
+        long total = 0;
+        long tenure = 0;
+        long outstanding = 0;
+        for (LoanStatus status : STATUSES) {
+            long statusCount = 0;
+            for (LoanType type : TYPES) {
+                Cell cell = current.cells[status.ordinal()][type.ordinal()];
+                long count = cell.count.sum();
+                long months = cell.tenureMonths.sum();
+                statusCount += count;
+                byType.merge(type, count, Long::sum);
+                typeTenure[type.ordinal()] += months;
+                tenure += months;
+                if (status == LoanStatus.DISBURSED) {
+                    long owed = cell.outstanding.sum();
+                    exposure.put(type, Money.ofMinor(owed));
+                    outstanding += owed;
+                }
+            }
+            byStatus.put(status, statusCount);
+            total += statusCount;
+        }
+        for (LoanType type : TYPES) tenureByType.put(type, average(typeTenure[type.ordinal()], byType.get(type)));
+
+        long approved = byStatus.get(LoanStatus.APPROVED) + byStatus.get(LoanStatus.DISBURSED) + byStatus.get(LoanStatus.COMPLETED);
+        long decided = approved + byStatus.get(LoanStatus.REJECTED);
+        BigDecimal approvalRate = decided == 0 ? null
+                : BigDecimal.valueOf(approved).divide(BigDecimal.valueOf(decided), 4, RoundingMode.HALF_UP);
+        return new LoanPortfolio(total, byStatus, byType, exposure, Money.ofMinor(outstanding), approvalRate,
+                average(tenure, total), tenureByType, current.rebuiltAt);
+    }
+
+    private static BigDecimal average(long sum, long count) {
+        return count == 0 ? null : BigDecimal.valueOf(sum).divide(BigDecimal.valueOf(count), 1, RoundingMode.HALF_UP);
+    }
+
+    // Returns when the restored snapshot was taken, or null if there was none to serve
+    private Instant restore() {
+        try {
+            LoanPortfolioSnapshot snapshot = mongoTemplate.findById(LoanPortfolioSnapshot.ID, LoanPortfolioSnapshot.class);
+            if (snapshot == null || snapshot.getCells() == null || snapshot.getTakenAt() == null) return null;
+            Grid restored = new Grid(snapshot.getTakenAt());
+            for (LoanPortfolioSnapshot.Cell saved : snapshot.getCells()) {
+                Cell cell = restored.cell(saved.status(), saved.loanType());
+                if (cell != null) cell.load(saved.count(), saved.tenureMonths(), saved.outstanding());
+            }
+            // The live grid holds only the changes made since startup
+            swapIn(restored, new long[STATUSES.length][TYPES.length][3]);
+            return snapshot.getTakenAt();
+        } catch (RuntimeException e) {
+            log.warn("Could not restore the loan portfolio snapshot: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.error("Loan portfolio rebuild failed; serving the previous totals", e);
+        }
+    }
+
+    /** Recomputes every cell from Mongo, swaps it in and saves it as the snapshot. */
+    public void rebuild() {
+        long started = System.nanoTime();
+        Instant at = Instant.now();
+        long[][][] before = grid.totals();
+        Grid rebuilt = new Grid(at);
+        List<Document> pipeline = List.of(new Document("$group", new Document("_id",
+                new Document("status", "$status").append("loanType", "$loanType"))
+                .append("count", new Document("$sum", 1))
+                .append("tenureMonths", new Document("$sum", new Document("$ifNull", List.of("$tenureMonths", 0))))
+                .append("outstanding", new Document("$sum", new Document("$cond", List.of(
+                        new Document("$eq", List.of("$status", LoanStatus.DISBURSED.name())),
+                        minorUnits(new Document("$ifNull", List.of("$outstandingPrincipal", "$amount"))),
+                        0L))))));
+        List<LoanPortfolioSnapshot.Cell> cells = new ArrayList<>();
+        for (Document row : mongoTemplate.getCollection("loans").aggregate(pipeline)) {
+            Document key = row.get("_id", Document.class);
+            LoanStatus status = parse(LoanStatus.class, key.getString("status"));
+            LoanType type = parse(LoanType.class, key.getString("loanType"));
+            Cell cell = rebuilt.cell(status, type);
+            if (cell == null) continue;
+            LoanPortfolioSnapshot.Cell saved = new LoanPortfolioSnapshot.Cell(status, type, number(row, "count"),
+                    number(row, "tenureMonths"), number(row, "outstanding"));
+            cell.load(saved.count(), saved.tenureMonths(), saved.outstanding());
+            cells.add(saved);
+        }
+        swapIn(rebuilt, before);
+
+        LoanPortfolioSnapshot snapshot = new LoanPortfolioSnapshot();
+        snapshot.setTakenAt(at);
+        snapshot.setCells(cells);
+        mongoTemplate.save(snapshot);
+        rebuildTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /*
+     * Swaps in {@code next}, carrying over what the live grid gained since {@code before}: once
+     * before the swap, then whatever hooks still holding the old grid added in between.
+     */
+    private void swapIn(Grid next, long[][][] before) {
+        Grid previous = grid;
+        long[][][] carried = previous.totals();
+        next.add(carried, before);
+        grid = next;
+        next.add(previous.totals(), carried);
+    }
+
+    // Money written by a node that predates the migration is in major units; read it as MoneyMigration converts it
+    private static Document minorUnits(Object value) {
+        return new Document("$cond", List.of(
+                new Document("$in", List.of(new Document("$type", value), List.of("long", "int"))),
+                value,
+                new Document("$toLong", new Document("$round", List.of(
+                        new Document("$multiply", List.of(new Document("$toDecimal", value), Money.MINOR_PER_MAJOR)),
+                        0)))));
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String name) {
+        if (name == null) return null;
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long number(Document row, String field) {
+        Object value = row.get(field);
+        return value instanceof Number n ? n.longValue() : 0;
+    }
+
+    private static long minor(Money money) {
+        return money != null ? money.minorUnits() : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private static final class Grid {
+        final Cell[][] cells = new Cell[STATUSES.length][TYPES.length];
+        final Instant rebuiltAt;
+
+        Grid(Instant rebuiltAt) {
+            this.rebuiltAt = rebuiltAt;
+            for (Cell[] row : cells) {
+                for (int i = 0; i < row.length; i++) row[i] = new Cell();
+            }
+        }
+
+        // Loans without a status or type are left out, as they are by the rebuild
+        Cell cell(LoanStatus status, LoanType type) {
+            return status == null || type == null ? null : cells[status.ordinal()][type.ordinal()];
+        }
+
+        long[][][] totals() {
+            long[][][] totals = new long[STATUSES.length][TYPES.length][];
+            for (int s = 0; s < STATUSES.length; s++) {
+                for (int t = 0; t < TYPES.length; t++) {
+                    Cell cell = cells[s][t];
+                    totals[s][t] = new long[] {cell.count.sum(), cell.tenureMonths.sum(), cell.outstanding.sum()};
+                }
+            }
+            return totals;
+        }
+
+        // Adds {@code to - from}, cell by cell
+        void add(long[][][] to, long[][][] from) {
+            for (int s = 0; s < STATUSES.length; s++) {
+                for (int t = 0; t < TYPES.length; t++) {
+                    long[] a = to[s][t];
+                    long[] b = from[s][t];
+                    cells[s][t].load(a[0] - b[0], a[1] - b[1], a[2] - b[2]);
+                }
+            }
+        }
+    }
+
+    private static final class Cell {
+        final LongAdder count = new LongAdder();
+        final LongAdder tenureMonths = new LongAdder();
+        final LongAdder outstanding = new LongAdder();
+
+        void add(int sign, Loan loan, long outstandingMinor) {
+            count.add(sign);
+            tenureMonths.add((long) sign * (loan.getTenureMonths() != null ? loan.getTenureMonths() : 0));
+            outstanding.add(outstandingMinor);
+        }
+
+        void load(long count, long tenureMonths, long outstanding) {
+            this.count.add(count);
+            this.tenureMonths.add(tenureMonths);
+            this.outstanding.add(outstanding);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.bank.loan;
+
+import com.bank.money.Money;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/** Equal-installment (EMI) repayment plan for a principal, tenure and annual rate. */
+public record LoanSchedule(Money principal, int tenureMonths, BigDecimal annualRate,
+                           Money emi, Money totalInterest, Money totalPayment,
+                           List<Installment> installments) {
+
+    /** One monthly payment; {@code balance} is what remains owed after it. */
+    public record Installment(int month, Money payment, Money principal, Money interest, Money balance) {}
+}
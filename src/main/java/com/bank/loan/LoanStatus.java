@@ -16,4 +16,14 @@ public enum LoanStatus {
     public String getDisplayName() {
         return displayName;
     }
+    
+    /** The loan lifecycle: PENDING to APPROVED or REJECTED, APPROVED to DISBURSED, DISBURSED to COMPLETED. */
+    public boolean canMoveTo(LoanStatus next) {
+        return switch (this) {
+            case PENDING -> next == APPROVED || next == REJECTED;
+            case APPROVED -> next == DISBURSED;
+            case DISBURSED -> next == COMPLETED;
+            case REJECTED, COMPLETED -> false;
+        };
+    }
 }
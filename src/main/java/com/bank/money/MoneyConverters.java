@@ -0,0 +1,72 @@
+package com.bank.money;
+
+import org.bson.types.Decimal128;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Mongo mapping for {@link Money}: written as Int64 minor units. Reading also accepts the
+ * Decimal128, double and string amounts of documents not yet migrated.
+ */
+public final class MoneyConverters {
+
+    private MoneyConverters() {}
+
+    public static List<Converter<?, ?>> all() {
+        return List.of(new MoneyToLong(), new LongToMoney(), new IntegerToMoney(),
+                new Decimal128ToMoney(), new DoubleToMoney(), new StringToMoney());
+    }
+
+    @WritingConverter
+    static final class MoneyToLong implements Converter<Money, Long> {
+        @Override
+        public Long convert(Money source) {
+            return source.minorUnits();
+        }
+    }
+
+    @ReadingConverter
+    static final class LongToMoney implements Converter<Long, Money> {
+        @Override
+        public Money convert(Long source) {
+            return Money.ofMinor(source);
+        }
+    }
+
+    @ReadingConverter
+    static final class IntegerToMoney implements Converter<Integer, Money> {
+        @Override
+        public Money convert(Integer source) {
+            return Money.ofMinor(source);
+        }
+    }
+
+    @ReadingConverter
+    static final class Decimal128ToMoney implements Converter<Decimal128, Money> {
+        @Override
+        public Money convert(Decimal128 source) {
+            return Money.of(source.bigDecimalValue());
+        }
+    }
+
+    @ReadingConverter
+    static final class DoubleToMoney implements Converter<Double, Money> {
+        @Override
+        public Money convert(Double source) {
+            return Money.of(BigDecimal.valueOf(source).setScale(Money.SCALE, RoundingMode.HALF_EVEN));
+        }
+    }
+
+    @ReadingConverter
+    static final class StringToMoney implements Converter<String, Money> {
+        @Override
+        public Money convert(String source) {
+            return Money.parse(source);
+        }
+    }
+}
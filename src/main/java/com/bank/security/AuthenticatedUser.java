@@ -0,0 +1,16 @@
+package com.bank.security;
+
+/** The caller of the current request, resolved once from its token by {@link TokenAuthenticationFilter}. */
+public record AuthenticatedUser(String userId, String role) {
+
+    public static final String ATTRIBUTE = AuthenticatedUser.class.getName();
+
+    public boolean isAdmin() {
+        return "ADMIN".equals(role);
+    }
+
+    /** True when this is the given user or an admin acting on their behalf. */
+    public boolean canAccess(String userId) {
+        return this.userId.equals(userId) || isAdmin();
+    }
+}
@@ -0,0 +1,18 @@
+package com.bank.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Injects the request's {@link AuthenticatedUser}. A required parameter on an unauthenticated
+ * request fails with 401 before the handler runs; an optional one is null.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+    boolean required() default true;
+}
@@ -0,0 +1,234 @@
+package com.bank.security;
+
+import com.bank.entity.PasswordPolicy;
+import com.bank.service.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * BCrypt on a dedicated, CPU-sized pool with a bounded queue, so a login storm uses at most
+ * that many cores and excess requests get 429 instead of piling up on request threads. A
+ * caller waits at most {@code bank.passwords.max-wait} for its hash and then gets 503, so a
+ * backed-up pool cannot hold servlet threads either.
+ *
+ * <p>The work factor is {@code bank.passwords.cost} when set. Otherwise it is calibrated to
+ * {@code bank.passwords.target-hash-time} and saved in {@code password_policy}, and every
+ * node uses the saved cost. All nodes hash alike, so a hash rehashed on the next successful
+ * login (see {@link #needsRehash}) is not rehashed again by the next node. The saved cost is
+ * re-read hourly and recalibrated once older than {@code bank.passwords.recalibrate-after},
+ * by whichever node gets there first, so it follows hardware changes.
+ */
+@Component
+public class PasswordHasher {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordHasher.class);
+    private static final int MIN_COST = 10;
+    private static final int MAX_COST = 16;
+
+    private static final long POLICY_CHECK_MINUTES = 60;
+
+    private final ThreadPoolExecutor pool;
+    private final MongoTemplate mongoTemplate;
+    private final Duration targetHashTime;
+    private final Duration recalibrateAfter;
+    private final long maxWaitMillis;
+    private volatile Hashing hashing;
+    private final Timer hashTimer;
+    private final Counter rejected;
+    private final Counter timedOut;
+    private final ScheduledExecutorService policyCheck = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "password-cost-policy");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PasswordHasher(MeterRegistry meterRegistry, MongoTemplate mongoTemplate,
+                          @Value("${bank.passwords.threads:0}") int threads,
+                          @Value("${bank.passwords.queue-capacity:64}") int queueCapacity,
+                          @Value("${bank.passwords.target-hash-time:250ms}") Duration targetHashTime,
+                          @Value("${bank.passwords.cost:0}") int configuredCost,
+                          @Value("${bank.passwords.recalibrate-after:7d}") Duration recalibrateAfter,
+                          @Value("${bank.passwords.max-wait:5s}") Duration maxWait) {
+        int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger index = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(n, n, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "password-hash-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.mongoTemplate = mongoTemplate;
+        this.targetHashTime = targetHashTime;
+        this.recalibrateAfter = recalibrateAfter;
+        this.maxWaitMillis = maxWait.toMillis();
+        this.hashing = new Hashing(configuredCost > 0 ? configuredCost : sharedCost());
+        this.hashTimer = Timer.builder("bank.passwords.hash").publishPercentiles(0.5, 0.99).register(meterRegistry);
+        this.rejected = Counter.builder("bank.passwords.rejected").register(meterRegistry);
+        this.timedOut = Counter.builder("bank.passwords.timed-out").register(meterRegistry);
+        Gauge.builder("bank.passwords.queue.depth", pool, p -> p.getQueue().size()).register(meterRegistry);
+        Gauge.builder("bank.passwords.cost", this, PasswordHasher::cost).register(meterRegistry);
+        if (configuredCost <= 0) {
+            policyCheck.scheduleWithFixedDelay(this::refreshCost, POLICY_CHECK_MINUTES, POLICY_CHECK_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    public String encode(CharSequence raw) {
+        BCryptPasswordEncoder encoder = hashing.encoder();
+        return run(() -> encoder.encode(raw));
+    }
+
+    public boolean matches(CharSequence raw, String encoded) {
+        if (encoded == null) return false;
+        // The cost is read from the hash itself, so any encoder verifies it
+        BCryptPasswordEncoder encoder = hashing.encoder();
+        return run(() -> encoder.matches(raw, encoded));
+    }
+
+    /** True when {@code encoded} was made with a different work factor than the current one. */
+    public boolean needsRehash(String encoded) {
+        return costOf(encoded) != hashing.cost();
+    }
+
+    public int cost() {
+        return hashing.cost();
+    }
+
+    // The caller waits, but the hashing itself only ever occupies the pool's threads
+    private <T> T run(Supplier<T> work) {
+        CompletableFuture<T> result;
+        try {
+            result = CompletableFuture.supplyAsync(() -> hashTimer.record(work), pool);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new TooManyRequestsException("Too many sign-in attempts in progress, retry shortly", 1);
+        }
+        try {
+            return result.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            throw new RejectedExecutionException("Sign-in is taking too long, retry shortly");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while hashing");
+        }
+    }
+
+    private static int costOf(String encoded) {
+        // $2a$12$<salt+hash>
+        if (encoded == null || encoded.length() < 7 || encoded.charAt(0) != '$') return -1;
+        try {
+            return Integer.parseInt(encoded.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void refreshCost() {
+        try {
+            int cost = sharedCost();
+            if (cost != hashing.cost()) {
+                log.info("BCrypt cost changed from {} to {}; hashes are upgraded on the next login", hashing.cost(), cost);
+                hashing = new Hashing(cost);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh the BCrypt cost: {}", e.getMessage());
+        }
+    }
+
+    /*
+     * The saved cost while it is fresh; otherwise this node calibrates and tries to save its
+     * result, conditional on the policy it read, so of several nodes exactly one replaces it
+     * and the rest adopt that node's cost.
+     */
+    private int sharedCost() {
+        try {
+            PasswordPolicy saved = mongoTemplate.findById(PasswordPolicy.ID, PasswordPolicy.class);
+            if (saved != null && saved.getCost() >= MIN_COST && saved.getCalibratedAt() != null
+                    && saved.getCalibratedAt().isAfter(Instant.now().minus(recalibrateAfter))) {
+                return saved.getCost();
+            }
+            int calibrated = calibrate(targetHashTime);
+            if (saved == null) {
+                mongoTemplate.upsert(Query.query(Criteria.where("_id").is(PasswordPolicy.ID)),
+                        new Update().setOnInsert("cost", calibrated).setOnInsert("calibratedAt", Instant.now()),
+                        PasswordPolicy.class);
+            } else {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(PasswordPolicy.ID)
+                                .and("calibratedAt").is(saved.getCalibratedAt())),
+                        new Update().set("cost", calibrated).set("calibratedAt", Instant.now()), PasswordPolicy.class);
+            }
+            saved = mongoTemplate.findById(PasswordPolicy.ID, PasswordPolicy.class);
+            return saved != null && saved.getCost() >= MIN_COST ? saved.getCost() : calibrated;
+        } catch (RuntimeException e) {
+            int fallback = hashing != null ? hashing.cost() : calibrate(targetHashTime);
+            log.warn("Could not read or save the shared BCrypt cost, using {}: {}", fallback, e.getMessage());
+            return fallback;
+        }
+    }
+
+    /*
+     * Each cost step doubles the time, so one measurement at MIN_COST predicts the rest. The
+     * chosen cost is the one whose predicted time is closest to the target. The measurement
+     * doubles as a capacity benchmark: one core sustains about 1 / hashTime logins per second.
+     */
+    private static int calibrate(Duration target) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(MIN_COST);
+        probe.encode("warm-up");
+        long[] samples = new long[5];
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            probe.encode("calibration");
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        double baseMillis = samples[samples.length / 2] / 1e6;
+        double steps = Math.log(target.toMillis() / baseMillis) / Math.log(2);
+        int cost = Math.max(MIN_COST, Math.min(MAX_COST, MIN_COST + (int) Math.round(steps)));
+        double hashMillis = baseMillis * Math.pow(2, cost - MIN_COST);
+        log.info("BCrypt cost {}: ~{} ms per hash, ~{} logins/s per core (cost {} measured at {} ms)",
+                cost, Math.round(hashMillis), String.format("%.1f", 1000 / hashMillis), MIN_COST,
+                String.format("%.1f", baseMillis));
+        return cost;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        policyCheck.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    private record Hashing(int cost, BCryptPasswordEncoder encoder) {
+        Hashing(int cost) {
+            this(cost, new BCryptPasswordEncoder(cost));
+        }
+    }
+}
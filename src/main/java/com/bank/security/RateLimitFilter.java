@@ -0,0 +1,89 @@
+package com.bank.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Applies {@link RateLimiter} tiers by route group: {@code auth} (everything under
+ * /api/auth, keyed by client IP) and {@code money} (deposit/withdraw, transfers and loan repayments, keyed by
+ * principal and by IP). Runs after {@link TokenAuthenticationFilter} so the principal is
+ * known. Limited requests get 429 with {@code Retry-After} in whole seconds. The client IP
+ * is the one the trusted proxies forwarded (server.forward-headers-strategy); login is also
+ * limited per submitted email, in AuthController, where the body has been read.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter limiter;
+    private final RateLimiter.Tier authTier;
+    private final RateLimiter.Tier moneyTier;
+    private final Counter authAllowed;
+    private final Counter authLimited;
+    private final Counter moneyAllowed;
+    private final Counter moneyLimited;
+
+    public RateLimitFilter(RateLimiter limiter, RateLimiter.Tier authTier, RateLimiter.Tier moneyTier,
+                           MeterRegistry meterRegistry) {
+        this.limiter = limiter;
+        this.authTier = authTier;
+        this.moneyTier = moneyTier;
+        this.authAllowed = outcome(meterRegistry, "auth", "allowed");
+        this.authLimited = outcome(meterRegistry, "auth", "limited");
+        this.moneyAllowed = outcome(meterRegistry, "money", "allowed");
+        this.moneyLimited = outcome(meterRegistry, "money", "limited");
+    }
+
+    private static Counter outcome(MeterRegistry registry, String group, String outcome) {
+        return Counter.builder("bank.ratelimit.requests").tag("group", group).tag("outcome", outcome).register(registry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI();
+        long waitNanos = 0;
+        if (path.startsWith("/api/auth/")) {
+            waitNanos = limiter.acquire("auth:ip:" + request.getRemoteAddr(), authTier);
+            (waitNanos > 0 ? authLimited : authAllowed).increment();
+        } else if (isMoneyMovement(request.getMethod(), path)) {
+            Object principal = request.getAttribute(AuthenticatedUser.ATTRIBUTE);
+            String userKey = principal instanceof AuthenticatedUser user ? "money:user:" + user.userId() : null;
+            if (userKey != null) waitNanos = limiter.acquire(userKey, moneyTier);
+            if (waitNanos == 0) {
+                waitNanos = limiter.acquire("money:ip:" + request.getRemoteAddr(), moneyTier);
+                // Refused by the IP bucket: the user's token was not spent on anything
+                if (waitNanos > 0 && userKey != null) limiter.release(userKey, moneyTier);
+            }
+            (waitNanos > 0 ? moneyLimited : moneyAllowed).increment();
+        }
+        if (waitNanos > 0) {
+            reject(response, waitNanos);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static boolean isMoneyMovement(String method, String path) {
+        return "POST".equals(method) && (path.equals("/api/transactions")
+                || path.equals("/api/transactions/transfer")
+                || path.equals("/api/transactions/transfer-by-email")
+                || path.startsWith("/api/loans/") && path.endsWith("/repay"));
+    }
+
+    private static void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfter = RateLimiter.retryAfterSeconds(waitNanos);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Too many requests\",\"status\":429}");
+    }
+}
@@ -0,0 +1,138 @@
+package com.bank.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets kept as one {@link AtomicLong} each (GCRA: the "theoretical arrival time" of
+ * the next request), so a check is a map lookup plus one CAS and never takes a lock. A bucket
+ * whose arrival time has passed is full and holds no state, so the sweeper drops it. When the
+ * key space is still at {@code bank.ratelimit.max-keys} a new key evicts the bucket with the
+ * earliest arrival time among a small sample: the one closest to full, whose reset gives away
+ * the least. Every key is limited, however many distinct keys a client sprays.
+ */
+@Component
+public class RateLimiter {
+
+    /** Requests allowed per minute and how many may arrive back to back. */
+    public record Tier(long intervalNanos, long burstNanos) {
+        public static Tier of(int perMinute, int burst) {
+            long interval = TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+            return new Tier(interval, interval * Math.max(1, burst));
+        }
+    }
+
+    private static final int EVICTION_SAMPLE = 16;
+    // Marks a bucket that has been swept or evicted; no real arrival time takes this value
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final int maxKeys;
+    private final Counter evicted;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rate-limit-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RateLimiter(MeterRegistry meterRegistry, @Value("${bank.ratelimit.max-keys:100000}") int maxKeys) {
+        this.maxKeys = maxKeys;
+        this.evicted = Counter.builder("bank.ratelimit.evicted").register(meterRegistry);
+        Gauge.builder("bank.ratelimit.keys", buckets, Map::size).register(meterRegistry);
+        sweeper.scheduleWithFixedDelay(this::sweep, 10, 10, TimeUnit.SECONDS);
+    }
+
+    /** Takes one token from {@code key}'s bucket; returns 0 if allowed, else nanos until it would be. */
+    public long acquire(String key, Tier tier) {
+        while (true) {
+            long now = System.nanoTime();
+            AtomicLong tat = buckets.get(key);
+            if (tat == null) {
+                if (buckets.size() >= maxKeys) evictOne();
+                tat = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            }
+            long wait = take(tat, now, tier);
+            if (wait != RETIRED) return wait;
+            // Swept or evicted after the lookup; start again on a fresh bucket
+            buckets.remove(key, tat);
+        }
+    }
+
+    private static long take(AtomicLong tat, long now, Tier tier) {
+        while (true) {
+            long current = tat.get();
+            if (current == RETIRED) return RETIRED;
+            long next = Math.max(current, now) + tier.intervalNanos();
+            long excess = next - now - tier.burstNanos();
+            if (excess > 0) return excess;
+            if (tat.compareAndSet(current, next)) return 0;
+        }
+    }
+
+    /** Gives back a token taken by {@link #acquire} for a request that was then refused anyway. */
+    public void release(String key, Tier tier) {
+        AtomicLong tat = buckets.get(key);
+        if (tat == null) return;
+        long current;
+        do {
+            current = tat.get();
+            if (current == RETIRED) return;
+        } while (!tat.compareAndSet(current, current - tier.intervalNanos()));
+    }
+
+    /** Whole seconds for a {@code Retry-After} header, rounded up. */
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    private void evictOne() {
+        Map.Entry<String, AtomicLong> victim = null;
+        long earliest = 0;
+        int sampled = 0;
+        for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+            long tat = entry.getValue().get();
+            if (tat != RETIRED && (victim == null || tat - earliest < 0)) {
+                victim = entry;
+                earliest = tat;
+            }
+            if (++sampled == EVICTION_SAMPLE) break;
+        }
+        if (victim != null && retire(victim.getKey(), victim.getValue(), earliest)) evicted.increment();
+    }
+
+    // Only a bucket still idle at the re-check is dropped; one taken from meanwhile stays
+    private void sweep() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+            long tat = entry.getValue().get();
+            if (tat != RETIRED && tat - now <= 0) retire(entry.getKey(), entry.getValue(), tat);
+        }
+    }
+
+    /*
+     * Marks the bucket retired if it still holds {@code seen}, then unmaps it. A request that
+     * looked the bucket up just before sees the mark and retries on a new one, so no token is
+     * ever taken from a bucket that is no longer in the map.
+     */
+    private boolean retire(String key, AtomicLong tat, long seen) {
+        if (!tat.compareAndSet(seen, RETIRED)) return false;
+        buckets.remove(key, tat);
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+}
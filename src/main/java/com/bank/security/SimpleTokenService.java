@@ -1,40 +1,146 @@
 package com.bank.security;
 
+import com.bank.security.TokenSegment.TokenKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Opaque server-side session tokens. Sessions live in lock-striped LRU segments with a hard
+ * total capacity (the least recently used session spills when a segment is full) and are
+ * expired by a hashed timing wheel ticking on a background thread, so memory tracks the live
+ * sessions instead of every token ever issued. Revoked and spilled sessions leave their wheel
+ * entries behind; once there are as many of those as the capacity, the ticker purges them,
+ * so the wheel holds at most twice the capacity. With {@code bank.sessions.off-heap=true} the
+ * records are packed into direct memory to keep millions of sessions out of the GC's way.
+ */
 @Service
 public class SimpleTokenService {
 
-    private static final long DEFAULT_TTL_SECONDS = 60L * 60L * 8L; // 8 hours
+    private static final int SEGMENTS = 64;
+    private static final int WHEEL_SIZE = 4096;
 
-    private final Map<String, TokenRecord> tokenToRecord = new ConcurrentHashMap<>();
+    private final long ttlSeconds;
+    private final int capacity;
+    private final AtomicInteger orphanedTimeouts = new AtomicInteger();
+    private final TokenSegment[] segments = new TokenSegment[SEGMENTS];
+    private final TokenTimingWheel<TokenKey> wheel;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "session-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter expired;
+    private final Counter spilled;
+    private final Counter revoked;
+
+    public SimpleTokenService(MeterRegistry meterRegistry,
+                              @Value("${bank.sessions.ttl:8h}") Duration ttl,
+                              @Value("${bank.sessions.capacity:1000000}") int capacity,
+                              @Value("${bank.sessions.off-heap:false}") boolean offHeap,
+                              @Value("${bank.sessions.tick:1s}") Duration tick) {
+        this.ttlSeconds = ttl.toSeconds();
+        this.capacity = capacity;
+        this.expired = evictions(meterRegistry, "expired");
+        this.spilled = evictions(meterRegistry, "capacity");
+        this.revoked = evictions(meterRegistry, "revoked");
+        int perSegment = Math.max(1, Math.ceilDiv(capacity, SEGMENTS));
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new TokenSegment(perSegment, offHeap, this::onSpill);
+        Gauge.builder("bank.sessions.live", this, SimpleTokenService::liveSessions).register(meterRegistry);
+
+        long tickMillis = tick.toMillis();
+        this.wheel = new TokenTimingWheel<>(WHEEL_SIZE, tickMillis, System.currentTimeMillis());
+        Gauge.builder("bank.sessions.wheel.entries", wheel, TokenTimingWheel::size).register(meterRegistry);
+        ticker.scheduleAtFixedRate(this::expireDue, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static Counter evictions(MeterRegistry registry, String reason) {
+        return Counter.builder("bank.sessions.evicted").tag("reason", reason).register(registry);
+    }
 
     public String issueToken(String userId, String role) {
-        String token = UUID.randomUUID().toString();
-        tokenToRecord.put(token, new TokenRecord(userId, role, Instant.now().plusSeconds(DEFAULT_TTL_SECONDS)));
-        return token;
+        UUID token = UUID.randomUUID();
+        Instant expiresAt = Instant.now().plusSeconds(ttlSeconds);
+        TokenKey key = new TokenKey(token.getMostSignificantBits(), token.getLeastSignificantBits());
+        segmentFor(key).put(key, new TokenRecord(userId, role, expiresAt));
+        wheel.schedule(key, expiresAt.toEpochMilli());
+        return token.toString();
     }
 
     public TokenRecord validate(String token) {
-        TokenRecord record = tokenToRecord.get(token);
+        TokenKey key = keyOf(token);
+        if (key == null) return null;
+        TokenSegment segment = segmentFor(key);
+        TokenRecord record = segment.get(key);
         if (record == null) return null;
+        // Expired but not yet reached by the wheel
         if (Instant.now().isAfter(record.expiresAt())) {
-            tokenToRecord.remove(token);
+            if (segment.removeIfExpired(key, Instant.now())) expired.increment();
             return null;
         }
         return record;
     }
 
     public void revoke(String token) {
-        tokenToRecord.remove(token);
+        TokenKey key = keyOf(token);
+        if (key != null && segmentFor(key).remove(key)) {
+            revoked.increment();
+            orphanedTimeouts.incrementAndGet();
+        }
     }
 
-    public record TokenRecord(String userId, String role, Instant expiresAt) {}
-}
+    private void onSpill() {
+        spilled.increment();
+        orphanedTimeouts.incrementAndGet();
+    }
 
+    public int liveSessions() {
+        int live = 0;
+        for (TokenSegment segment : segments) live += segment.size();
+        return live;
+    }
 
+    private void expireDue() {
+        // A key still in its segment is live; everything else in the wheel belongs to a removed session
+        if (orphanedTimeouts.get() >= capacity) {
+            orphanedTimeouts.set(0);
+            wheel.purge(key -> segmentFor(key).contains(key));
+        }
+        Instant now = Instant.now();
+        wheel.advance(now.toEpochMilli(), key -> {
+            if (segmentFor(key).removeIfExpired(key, now)) expired.increment();
+        });
+    }
+
+    private TokenSegment segmentFor(TokenKey key) {
+        return segments[(int) (key.low() ^ (key.low() >>> 32)) & (SEGMENTS - 1)];
+    }
+
+    private static TokenKey keyOf(String token) {
+        if (token == null) return null;
+        try {
+            UUID uuid = UUID.fromString(token);
+            return new TokenKey(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    public record TokenRecord(String userId, String role, Instant expiresAt) {}
+}
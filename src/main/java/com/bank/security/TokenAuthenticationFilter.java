@@ -0,0 +1,74 @@
+package com.bank.security;
+
+import com.bank.util.JwtUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates {@code X-Auth-Token} once per request and publishes the caller as an
+ * {@link AuthenticatedUser} request attribute and as the Spring Security authentication
+ * (authority {@code ROLE_<role>}), so controllers and {@code @PreAuthorize} never parse the
+ * token again. Requests without a valid token continue anonymously. Time spent here is
+ * recorded as {@code bank.auth.filter} by outcome.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Auth-Token";
+    // EventSource cannot send headers, so the event stream alone accepts ?token=
+    private static final String EVENT_STREAM_PATH = "/api/accounts/me/events";
+
+    private final JwtUtils jwtUtils;
+    private final Timer authenticated;
+    private final Timer rejected;
+    private final Timer anonymous;
+
+    public TokenAuthenticationFilter(JwtUtils jwtUtils, MeterRegistry meterRegistry) {
+        this.jwtUtils = jwtUtils;
+        this.authenticated = outcomeTimer(meterRegistry, "authenticated");
+        this.rejected = outcomeTimer(meterRegistry, "rejected");
+        this.anonymous = outcomeTimer(meterRegistry, "anonymous");
+    }
+
+    private static Timer outcomeTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("bank.auth.filter").tag("outcome", outcome).register(registry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        String token = request.getHeader(HEADER);
+        if (token == null && EVENT_STREAM_PATH.equals(request.getRequestURI())) token = request.getParameter("token");
+
+        if (token == null) {
+            anonymous.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } else {
+            JwtUtils.TokenRecord rec = jwtUtils.validate(token);
+            if (rec == null) {
+                rejected.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } else {
+                AuthenticatedUser user = new AuthenticatedUser(rec.userId(), rec.role());
+                request.setAttribute(AuthenticatedUser.ATTRIBUTE, user);
+                SecurityContext context = SecurityContextHolder.createEmptyContext();
+                context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+                        user, null, List.of(new SimpleGrantedAuthority("ROLE_" + user.role()))));
+                SecurityContextHolder.setContext(context);
+                authenticated.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+        chain.doFilter(request, response);
+    }
+}
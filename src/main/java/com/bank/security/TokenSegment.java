@@ -0,0 +1,126 @@
+package com.bank.security;
+
+import com.bank.security.SimpleTokenService.TokenRecord;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One lock stripe of the session table: an access-ordered map capped at {@code capacity},
+ * spilling the least recently used session when full. In off-heap mode each record is packed
+ * into a fixed 64-byte slot of a direct buffer and the map only holds the slot index, so a
+ * session costs the key plus an Integer on the heap.
+ */
+final class TokenSegment {
+
+    static final int SLOT_BYTES = 64;
+
+    private final int capacity;
+    private final ByteBuffer slab;
+    private final int[] freeSlots;
+    private int freeCount;
+    private final Runnable onSpill;
+    private final LinkedHashMap<TokenKey, Object> entries;
+
+    TokenSegment(int capacity, boolean offHeap, Runnable onSpill) {
+        this.capacity = capacity;
+        this.onSpill = onSpill;
+        this.slab = offHeap ? ByteBuffer.allocateDirect(capacity * SLOT_BYTES) : null;
+        this.freeSlots = offHeap ? new int[capacity] : null;
+        if (offHeap) for (int i = 0; i < capacity; i++) freeSlots[freeCount++] = capacity - 1 - i;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TokenKey, Object> eldest) {
+                if (size() <= TokenSegment.this.capacity) return false;
+                release(eldest.getValue());
+                TokenSegment.this.onSpill.run();
+                return true;
+            }
+        };
+    }
+
+    synchronized void put(TokenKey key, TokenRecord record) {
+        if (slab == null) {
+            entries.put(key, record);
+            return;
+        }
+        // Free a slot first when full; removeEldestEntry then has nothing left to spill
+        if (freeCount == 0) {
+            var eldest = entries.entrySet().iterator();
+            release(eldest.next().getValue());
+            eldest.remove();
+            onSpill.run();
+        }
+        int slot = freeSlots[--freeCount];
+        encode(slot, record);
+        entries.put(key, slot);
+    }
+
+    synchronized TokenRecord get(TokenKey key) {
+        Object value = entries.get(key);
+        return value == null ? null : decode(value);
+    }
+
+    synchronized boolean remove(TokenKey key) {
+        Object value = entries.remove(key);
+        if (value == null) return false;
+        release(value);
+        return true;
+    }
+
+    /** Removes the session only if it has expired by {@code now}; used by the timing wheel. */
+    synchronized boolean removeIfExpired(TokenKey key, Instant now) {
+        Object value = entries.get(key);
+        if (value == null || now.isBefore(decode(value).expiresAt())) return false;
+        entries.remove(key);
+        release(value);
+        return true;
+    }
+
+    synchronized boolean contains(TokenKey key) {
+        return entries.containsKey(key);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void release(Object value) {
+        if (slab != null) freeSlots[freeCount++] = (Integer) value;
+    }
+
+    private TokenRecord decode(Object value) {
+        if (slab == null) return (TokenRecord) value;
+        ByteBuffer slot = slab.slice((Integer) value * SLOT_BYTES, SLOT_BYTES);
+        long expiresAt = slot.getLong();
+        String userId = readString(slot);
+        String role = readString(slot);
+        return new TokenRecord(userId, role, Instant.ofEpochSecond(expiresAt));
+    }
+
+    // [expiresAt:8][userId len:1][userId][role len:1][role]
+    private void encode(int index, TokenRecord record) {
+        byte[] userId = record.userId().getBytes(StandardCharsets.UTF_8);
+        byte[] role = record.role().getBytes(StandardCharsets.UTF_8);
+        if (8 + 2 + userId.length + role.length > SLOT_BYTES) {
+            freeSlots[freeCount++] = index;
+            throw new IllegalArgumentException("Session record does not fit an off-heap slot");
+        }
+        slab.slice(index * SLOT_BYTES, SLOT_BYTES)
+                .putLong(record.expiresAt().getEpochSecond())
+                .put((byte) userId.length).put(userId)
+                .put((byte) role.length).put(role);
+    }
+
+    private static String readString(ByteBuffer slot) {
+        byte[] bytes = new byte[slot.get()];
+        slot.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Token UUID as two longs, so keys stay small and hash without touching a String. */
+    record TokenKey(long high, long low) {}
+}
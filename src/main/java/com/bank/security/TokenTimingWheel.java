@@ -0,0 +1,75 @@
+package com.bank.security;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Hashed timing wheel: a deadline lands in bucket {@code tick % size}; each tick scans one
+ * bucket, fires what is due and leaves entries for later rotations in place. Scheduling is
+ * O(1) and each entry is visited once per rotation, so expiry is O(1) amortized no matter
+ * how many entries are live. Entries whose key went away early are not found one by one;
+ * the owner calls {@link #purge} once enough have piled up.
+ */
+final class TokenTimingWheel<K> {
+
+    private final ConcurrentLinkedQueue<Timeout<K>>[] buckets;
+    private final long tickMillis;
+    private final int mask;
+    private final AtomicInteger size = new AtomicInteger();
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    TokenTimingWheel(int size, long tickMillis, long nowMillis) {
+        if (Integer.bitCount(size) != 1) throw new IllegalArgumentException("Wheel size must be a power of two");
+        this.buckets = new ConcurrentLinkedQueue[size];
+        for (int i = 0; i < size; i++) buckets[i] = new ConcurrentLinkedQueue<>();
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    void schedule(K key, long deadlineMillis) {
+        long tick = Math.ceilDiv(deadlineMillis, tickMillis);
+        buckets[(int) (tick & mask)].add(new Timeout<>(key, tick));
+        size.incrementAndGet();
+    }
+
+    /** Drops every entry whose key {@code live} rejects; called from the thread that advances. */
+    void purge(Predicate<K> live) {
+        for (ConcurrentLinkedQueue<Timeout<K>> bucket : buckets) {
+            bucket.removeIf(timeout -> {
+                if (live.test(timeout.key())) return false;
+                size.decrementAndGet();
+                return true;
+            });
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /** Fires every entry due up to {@code nowMillis}; called from a single thread. */
+    void advance(long nowMillis, Consumer<K> expire) {
+        long target = nowMillis / tickMillis;
+        // After a long pause one full rotation already covers every bucket
+        long from = Math.max(currentTick + 1, target - mask);
+        for (long tick = from; tick <= target; tick++) {
+            Iterator<Timeout<K>> it = buckets[(int) (tick & mask)].iterator();
+            while (it.hasNext()) {
+                Timeout<K> timeout = it.next();
+                if (timeout.deadlineTick() <= target) {
+                    it.remove();
+                    size.decrementAndGet();
+                    expire.accept(timeout.key());
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, target);
+    }
+
+    private record Timeout<K>(K key, long deadlineTick) {}
+}
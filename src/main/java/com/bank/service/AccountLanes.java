@@ -0,0 +1,387 @@
+package com.bank.service;
+
+import com.bank.entity.Transaction;
+import com.bank.entity.User;
+import com.bank.money.Money;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Single-writer execution lanes for money movement. Each user id hashes to one of N lanes;
+ * a lane is one thread draining one queue, so every debit of an account runs in submission
+ * order without locks while different accounts proceed in parallel.
+ *
+ * <p>Balance postings queued behind each other are coalesced: one $in read of the touched
+ * balances, guards evaluated in order in memory, a single net $inc per account and one
+ * batched insert of the ledger rows. Arbitrary tasks (transfers) act as barriers within
+ * their lane.
+ * Within one process every debit of an account goes through its lane, but another node has
+ * lanes of its own, so the in-memory guard is backed by a server-side one on the net $inc:
+ * the balance must cover the batch's lowest running prefix. If it does not, that account's
+ * postings are replayed one at a time with their own guards.
+ *
+ * <p>A posting only fails if its balance change was not applied. Ledger rows of applied
+ * postings that cannot be written are retried in the background
+ * ({@code bank.lanes.ledger.unrecorded}) rather than reported as failures.
+ */
+@Component
+public class AccountLanes {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountLanes.class);
+    private static final long LEDGER_RETRY_SECONDS = 5;
+
+    private final MongoTemplate mongoTemplate;
+    private final TransactionService transactionService;
+    private final Lane[] lanes;
+    private final int maxBatch;
+    private final Timer waitTimer;
+    private final DistributionSummary batchSize;
+    private final ConcurrentLinkedQueue<Transaction> unrecorded = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService ledgerRetry = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "account-lane-ledger-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AccountLanes(MongoTemplate mongoTemplate, TransactionService transactionService, MeterRegistry meterRegistry,
+                        @Value("${bank.lanes.count:0}") int laneCount,
+                        @Value("${bank.lanes.queue-capacity:10000}") int queueCapacity,
+                        @Value("${bank.lanes.max-batch:256}") int maxBatch) {
+        this.mongoTemplate = mongoTemplate;
+        this.transactionService = transactionService;
+        this.maxBatch = maxBatch;
+        this.waitTimer = Timer.builder("bank.lanes.wait").publishPercentiles(0.5, 0.99).register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("bank.lanes.batch.size").register(meterRegistry);
+        Gauge.builder("bank.lanes.ledger.unrecorded", unrecorded, ConcurrentLinkedQueue::size).register(meterRegistry);
+        ledgerRetry.scheduleWithFixedDelay(this::retryLedger, LEDGER_RETRY_SECONDS, LEDGER_RETRY_SECONDS, TimeUnit.SECONDS);
+        int n = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        this.lanes = new Lane[n];
+        for (int i = 0; i < n; i++) {
+            Lane lane = new Lane(i, queueCapacity);
+            Gauge.builder("bank.lanes.queue.depth", lane.queue, BlockingQueue::size)
+                    .tag("lane", String.valueOf(i))
+                    .register(meterRegistry);
+            lanes[i] = lane;
+            lane.thread.start();
+        }
+    }
+
+    /**
+     * Queues a balance change. The future completes with the balance after this posting,
+     * with {@code null} if the user does not exist, or exceptionally with
+     * {@link InsufficientFundsException} when a guarded debit is not covered. When
+     * {@code entry} is given it is stamped with that balance and recorded in the ledger
+     * before the future completes.
+     */
+    public CompletableFuture<Money> post(String userId, Money delta, boolean guarded, Transaction entry) {
+        Posting posting = new Posting(userId, delta.minorUnits(), guarded, entry, new CompletableFuture<>(), System.nanoTime());
+        laneFor(userId).offer(posting);
+        return posting.result();
+    }
+
+    /**
+     * Runs {@code work} in the account's lane, after every mutation already queued for it.
+     * The work must not wait on another lane result itself.
+     */
+    public <T> CompletableFuture<T> execute(String userId, Supplier<T> work) {
+        Barrier<T> barrier = new Barrier<>(work, new CompletableFuture<>(), System.nanoTime());
+        laneFor(userId).offer(barrier);
+        return barrier.result();
+    }
+
+    private Lane laneFor(String userId) {
+        return lanes[Math.floorMod(userId.hashCode(), lanes.length)];
+    }
+
+    /** Waits for a lane result, rethrowing the task's own exception rather than a wrapper. */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    // Stop accepting work, let every lane drain what is already queued
+    @PreDestroy
+    public void shutdown() {
+        for (Lane lane : lanes) lane.running = false;
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        ledgerRetry.shutdown();
+        retryLedger();
+        if (!unrecorded.isEmpty()) log.error("{} ledger rows of applied postings were never recorded", unrecorded.size());
+    }
+
+    private sealed interface Task permits Posting, Barrier {
+        long enqueuedNanos();
+        CompletableFuture<?> result();
+    }
+
+    private record Posting(String userId, long delta, boolean guarded, Transaction entry,
+                           CompletableFuture<Money> result, long enqueuedNanos) implements Task {}
+
+    private record Barrier<T>(Supplier<T> work, CompletableFuture<T> result, long enqueuedNanos) implements Task {
+        void run() {
+            try {
+                result.complete(work.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+    }
+
+    private final class Lane implements Runnable {
+        private final BlockingQueue<Task> queue;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Lane(int index, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this, "account-lane-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void offer(Task task) {
+            if (!running || !queue.offer(task)) {
+                throw new RejectedExecutionException("Account lane is saturated, retry later");
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Task> batch = new ArrayList<>(maxBatch);
+            while (running || !queue.isEmpty()) {
+                Task first;
+                try {
+                    first = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    running = false;
+                    continue;
+                }
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                process(batch);
+                batch.clear();
+            }
+        }
+
+        // Contiguous postings are flushed together; a barrier flushes what precedes it, then runs alone
+        private void process(List<Task> batch) {
+            long now = System.nanoTime();
+            batchSize.record(batch.size());
+            List<Posting> pending = new ArrayList<>();
+            for (Task task : batch) {
+                waitTimer.record(now - task.enqueuedNanos(), TimeUnit.NANOSECONDS);
+                if (task instanceof Posting posting) {
+                    pending.add(posting);
+                } else if (task instanceof Barrier<?> barrier) {
+                    flush(pending);
+                    pending.clear();
+                    barrier.run();
+                }
+            }
+            flush(pending);
+        }
+    }
+
+    private void flush(List<Posting> postings) {
+        if (postings.isEmpty()) return;
+        try {
+            if (postings.size() == 1) {
+                postSingle(postings.get(0));
+            } else {
+                postCoalesced(postings);
+            }
+        } catch (RuntimeException e) {
+            // Applied postings have already completed, so this only fails the ones that were not
+            log.error("Failed to apply balance postings", e);
+            for (Posting posting : postings) posting.result().completeExceptionally(e);
+        }
+    }
+
+    // Never throws: the balances have moved, so a failed ledger write is retried rather than reported
+    private void recordLedger(List<Transaction> entries) {
+        if (entries.isEmpty()) return;
+        try {
+            if (entries.size() == 1) {
+                transactionService.record(entries.get(0));
+            } else {
+                transactionService.recordAll(entries);
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not record {} ledger rows of applied postings; retrying in the background", entries.size(), e);
+            unrecorded.addAll(entries);
+        }
+    }
+
+    // Row by row; record saves by id, so a row that did make it on an earlier attempt is not duplicated
+    private void retryLedger() {
+        Transaction entry;
+        while ((entry = unrecorded.peek()) != null) {
+            try {
+                transactionService.record(entry);
+            } catch (RuntimeException e) {
+                log.warn("Ledger retry failed, {} rows pending: {}", unrecorded.size(), e.getMessage());
+                return;
+            }
+            unrecorded.poll();
+        }
+    }
+
+    private void postSingle(Posting posting) {
+        Criteria criteria = Criteria.where("_id").is(posting.userId());
+        if (posting.guarded()) criteria = criteria.and("balance").gte(-posting.delta());
+        User updated = mongoTemplate.findAndModify(Query.query(criteria),
+                new Update().inc("balance", posting.delta()).inc("totalTransactions", 1L),
+                FindAndModifyOptions.options().returnNew(true), User.class);
+        if (updated != null) {
+            if (posting.entry() != null) {
+                posting.entry().setTimestamp(Instant.now());
+                posting.entry().setBalanceAfter(updated.getBalance());
+                recordLedger(List.of(posting.entry()));
+            }
+            posting.result().complete(updated.getBalance());
+        } else if (posting.guarded() && mongoTemplate.exists(Query.query(Criteria.where("_id").is(posting.userId())), User.class)) {
+            posting.result().completeExceptionally(new InsufficientFundsException());
+        } else {
+            posting.result().complete(null);
+        }
+    }
+
+    /*
+     * Guards are checked in order against balances read at the start of the batch. Each account
+     * then gets one findAndModify with its net delta, guarded so the balance covers the lowest
+     * point the postings reach; the returned balance is exact, so walking the account's
+     * postings backwards from it yields each row's exact balanceAfter even if a credit landed
+     * between the read and the write. An account whose guard fails (another node debited it
+     * meanwhile) has its postings replayed one by one.
+     */
+    private void postCoalesced(List<Posting> postings) {
+        LinkedHashSet<String> ids = new LinkedHashSet<>();
+        for (Posting posting : postings) ids.add(posting.userId());
+        Query read = Query.query(Criteria.where("_id").in(ids));
+        read.fields().include("balance");
+        Map<String, Long> running = new HashMap<>();
+        for (User user : mongoTemplate.find(read, User.class)) running.put(user.getId(), user.getBalance().minorUnits());
+
+        Map<String, List<Posting>> accepted = new LinkedHashMap<>();
+        for (Posting posting : postings) {
+            Long balance = running.get(posting.userId());
+            if (balance == null) {
+                posting.result().complete(null);
+                continue;
+            }
+            long after = Math.addExact(balance, posting.delta());
+            if (posting.guarded() && after < 0) {
+                posting.result().completeExceptionally(new InsufficientFundsException());
+                continue;
+            }
+            running.put(posting.userId(), after);
+            accepted.computeIfAbsent(posting.userId(), id -> new ArrayList<>()).add(posting);
+        }
+
+        Map<Posting, Money> balanceAfter = new IdentityHashMap<>();
+        List<Transaction> entries = new ArrayList<>();
+        List<Posting> replay = new ArrayList<>();
+        RuntimeException failure = null;
+        for (Map.Entry<String, List<Posting>> account : accepted.entrySet()) {
+            List<Posting> accountPostings = account.getValue();
+            if (failure != null) {
+                // Not applied: fail rather than risk moving money after an unknown error
+                for (Posting posting : accountPostings) posting.result().completeExceptionally(failure);
+                continue;
+            }
+            long net = 0;
+            long lowest = 0;
+            boolean guarded = false;
+            for (Posting posting : accountPostings) {
+                net = Math.addExact(net, posting.delta());
+                lowest = Math.min(lowest, net);
+                guarded |= posting.guarded();
+            }
+            Criteria criteria = Criteria.where("_id").is(account.getKey());
+            if (guarded && lowest < 0) criteria = criteria.and("balance").gte(-lowest);
+            User updated;
+            try {
+                updated = mongoTemplate.findAndModify(Query.query(criteria),
+                        new Update().inc("balance", net).inc("totalTransactions", (long) accountPostings.size()),
+                        FindAndModifyOptions.options().returnNew(true), User.class);
+            } catch (RuntimeException e) {
+                log.error("Failed to apply {} postings to {}", accountPostings.size(), account.getKey(), e);
+                failure = e;
+                for (Posting posting : accountPostings) posting.result().completeExceptionally(e);
+                continue;
+            }
+            if (updated == null) {
+                replay.addAll(accountPostings);
+                continue;
+            }
+            // Stamped as applied, not as submitted, so (timestamp, _id) follows the balance order
+            Instant applied = Instant.now();
+            Money after = updated.getBalance();
+            for (int i = accountPostings.size() - 1; i >= 0; i--) {
+                Posting posting = accountPostings.get(i);
+                balanceAfter.put(posting, after);
+                if (posting.entry() != null) {
+                    posting.entry().setTimestamp(applied);
+                    posting.entry().setBalanceAfter(after);
+                }
+                after = after.minus(Money.ofMinor(posting.delta()));
+            }
+            for (Posting posting : accountPostings) {
+                if (posting.entry() != null) entries.add(posting.entry());
+            }
+        }
+        recordLedger(entries);
+        balanceAfter.forEach((posting, after) -> posting.result().complete(after));
+
+        // Each with its own server-side guard, in submission order
+        for (Posting posting : replay) {
+            if (failure != null) {
+                posting.result().completeExceptionally(failure);
+            } else {
+                postSingle(posting);
+            }
+        }
+    }
+}
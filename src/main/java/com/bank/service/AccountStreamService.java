@@ -0,0 +1,141 @@
+package com.bank.service;
+
+import com.bank.event.AccountEvent;
+import com.bank.event.AccountEventBus;
+import com.bank.money.Money;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-Sent Events for a user's dashboard: one {@code balance} event on connect, then a
+ * {@code transaction} event (row plus balance after it) for every ledger row written for the
+ * user, delivered from {@link AccountEventBus}. Apart from the read on connect an open stream
+ * costs no database work; a comment line every heartbeat keeps idle proxies from closing it.
+ */
+@Service
+public class AccountStreamService {
+
+    private final AccountEventBus bus;
+    private final UserService userService;
+    private final Set<SseEmitter> open = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "account-events-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AccountStreamService(AccountEventBus bus, UserService userService, MeterRegistry meterRegistry,
+                                @Value("${bank.events.heartbeat:25s}") Duration heartbeatInterval) {
+        this.bus = bus;
+        this.userService = userService;
+        Gauge.builder("bank.events.streams", open, Set::size).register(meterRegistry);
+        long millis = heartbeatInterval.toMillis();
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeats, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a stream for {@code userId}, or returns null when the user does not exist. Events
+     * are buffered from before the balance read until the snapshot is sent, so none written in
+     * between is missed and none reaches the client ahead of the older snapshot.
+     */
+    public SseEmitter open(String userId) {
+        SseEmitter emitter = new SseEmitter(0L);
+        Stream stream = new Stream(emitter);
+        Runnable unsubscribe = bus.subscribe(userId, stream::deliver);
+        Instant readAt = Instant.now();
+        Money balance = userService.findBalance(userId).orElse(null);
+        if (balance == null) {
+            unsubscribe.run();
+            return null;
+        }
+
+        Runnable close = () -> {
+            unsubscribe.run();
+            open.remove(emitter);
+        };
+        emitter.onCompletion(close);
+        emitter.onTimeout(close);
+        emitter.onError(e -> close.run());
+        open.add(emitter);
+        stream.start(balance, readAt);
+        return emitter;
+    }
+
+    // Holds events until the snapshot is out, then passes them straight through
+    private final class Stream {
+        private final SseEmitter emitter;
+        private List<AccountEvent> buffered = new ArrayList<>();
+
+        Stream(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized void deliver(AccountEvent event) {
+            if (buffered != null) {
+                buffered.add(event);
+            } else {
+                send(emitter, "transaction", payload(event));
+            }
+        }
+
+        /*
+         * Rows applied before the read began are in the snapshot and are dropped. Later ones are
+         * sent in order, so even one the read may already have seen is followed by every newer
+         * row, and the client ends on the newest balance.
+         */
+        synchronized void start(Money balance, Instant readAt) {
+            send(emitter, "balance", Map.of("balance", balance));
+            for (AccountEvent event : buffered) {
+                Instant applied = event.transaction() != null ? event.transaction().getTimestamp() : null;
+                if (applied != null && applied.isBefore(readAt)) continue;
+                send(emitter, "transaction", payload(event));
+            }
+            buffered = null;
+        }
+    }
+
+    private static Map<String, Object> payload(AccountEvent event) {
+        return Map.of("balance", event.balance(), "transaction", event.transaction());
+    }
+
+    private void send(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; completing triggers the unsubscribe above
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void sendHeartbeats() {
+        for (SseEmitter emitter : open) {
+            try {
+                emitter.send(SseEmitter.event().comment("keep-alive"));
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        for (SseEmitter emitter : open) emitter.complete();
+    }
+}
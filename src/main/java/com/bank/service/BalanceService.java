@@ -0,0 +1,63 @@
+package com.bank.service;
+
+import com.bank.entity.Transaction;
+import com.bank.money.Money;
+import com.bank.transaction.TransactionType;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Balance mutations. Each one is queued on the account's lane (see {@link AccountLanes}),
+ * applied server-side with $inc, never by saving a whole User read earlier, and recorded in
+ * the ledger with the resulting balance.
+ */
+@Service
+public class BalanceService {
+
+    private final AccountLanes lanes;
+
+    public BalanceService(AccountLanes lanes) {
+        this.lanes = lanes;
+    }
+
+    /** Credits the user and returns the new balance, or empty if the user does not exist. */
+    public Optional<Money> deposit(String userId, Money amount, String description) {
+        return credit(userId, amount, TransactionType.DEPOSIT, description);
+    }
+
+    /**
+     * Debits the user only if the balance covers the amount. Returns empty when the user
+     * does not exist and throws {@link InsufficientFundsException} when the guard fails.
+     */
+    public Optional<Money> withdraw(String userId, Money amount, String description) {
+        requirePositive(amount);
+        Transaction entry = entry(userId, amount, TransactionType.WITHDRAW, description);
+        return Optional.ofNullable(AccountLanes.await(lanes.post(userId, amount.negate(), true, entry)));
+    }
+
+    public Optional<Money> disburseLoan(String userId, Money amount, String description) {
+        return credit(userId, amount, TransactionType.LOAN_DISBURSEMENT, description);
+    }
+
+    private Optional<Money> credit(String userId, Money amount, TransactionType type, String description) {
+        requirePositive(amount);
+        Transaction entry = entry(userId, amount, type, description);
+        return Optional.ofNullable(AccountLanes.await(lanes.post(userId, amount, false, entry)));
+    }
+
+    private static Transaction entry(String userId, Money amount, TransactionType type, String description) {
+        Transaction tx = new Transaction();
+        tx.setUserId(userId);
+        tx.setAmount(amount);
+        tx.setType(type);
+        tx.setDescription(description);
+        return tx;
+    }
+
+    private static void requirePositive(Money amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.bank.service;
+
+import com.bank.entity.IdempotencyRecord;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Replays the first response for a repeated {@code Idempotency-Key}. Keys are scoped to the
+ * caller and route. A bounded in-memory map answers retries and holds concurrent duplicates
+ * on the in-flight request (single-flight); the {@code idempotency_keys} collection, expired
+ * by a TTL index at {@code bank.idempotency.ttl}, makes keys hold across nodes and restarts.
+ *
+ * <p>Every response is stored, error statuses included. A request that throws releases the
+ * key so the client can retry it. A claim is held under a {@code bank.idempotency.pending-lease}
+ * that the claiming node renews while the request runs; a claim left by a node that died is
+ * taken over once its lease has run out, and the final write only lands for the lease owner.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final Duration PENDING_WAIT = Duration.ofSeconds(10);
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Duration ttl;
+    private final Duration pendingLease;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final Counter replays;
+    private final Counter executions;
+    private final Counter leasesLost;
+    // Claims this node is running, by record id, with the owner token they were claimed under
+    private final Map<String, String> held = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService leaseRenewal = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "idempotency-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public IdempotencyService(MongoTemplate mongoTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                              @Value("${bank.idempotency.max-entries:10000}") int maxEntries,
+                              @Value("${bank.idempotency.ttl:24h}") Duration ttl,
+                              @Value("${bank.idempotency.pending-lease:1m}") Duration pendingLease) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.ttl = ttl;
+        this.pendingLease = pendingLease;
+        this.replays = Counter.builder("bank.idempotency.requests").tag("outcome", "replayed").register(meterRegistry);
+        this.executions = Counter.builder("bank.idempotency.requests").tag("outcome", "executed").register(meterRegistry);
+        this.leasesLost = Counter.builder("bank.idempotency.leases.lost").register(meterRegistry);
+        long renewMillis = Math.max(1, pendingLease.toMillis() / 3);
+        leaseRenewal.scheduleWithFixedDelay(this::renewLeases, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs {@code action} at most once per (principal, route, key). Without a key the action
+     * simply runs. {@code request} is fingerprinted so reusing a key for a different payload
+     * is rejected instead of silently replayed.
+     */
+    public ResponseEntity<?> execute(String key, String principal, String route, Object request,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) return action.get();
+        String id = principal + ":" + route + ":" + key;
+        String fingerprint = fingerprint(request);
+
+        Entry mine = new Entry(new CompletableFuture<>(), System.nanoTime(), fingerprint);
+        Entry existing = entries.putIfAbsent(id, mine);
+        if (existing != null && existing.isExpired(ttlNanos)) {
+            entries.remove(id, existing);
+            existing = entries.putIfAbsent(id, mine);
+        }
+        if (existing != null) {
+            if (!existing.fingerprint().equals(fingerprint)) return mismatch();
+            return replay(AccountLanes.await(existing.result()));
+        }
+        insertionOrder.add(id);
+        evict();
+
+        try {
+            Stored stored = claimAndRun(id, fingerprint, action, mine);
+            mine.result().complete(stored);
+            return stored.replayed() ? replay(stored) : stored.original();
+        } catch (RuntimeException e) {
+            entries.remove(id, mine);
+            mine.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Stored claimAndRun(String id, String fingerprint, Supplier<ResponseEntity<?>> action, Entry mine) {
+        Instant now = Instant.now();
+        IdempotencyRecord claim = new IdempotencyRecord();
+        claim.setId(id);
+        claim.setFingerprint(fingerprint);
+        claim.setCreatedAt(now);
+        claim.setExpiresAt(now.plus(ttl));
+        claim.setLeaseUntil(now.plus(pendingLease));
+        String owner = UUID.randomUUID().toString();
+        claim.setLeaseOwner(owner);
+        try {
+            mongoTemplate.insert(claim);
+        } catch (DuplicateKeyException e) {
+            // Another node, or this node before a restart or eviction, saw the key first
+            IdempotencyRecord other = awaitCompletion(id, fingerprint, owner);
+            if (other != null) {
+                if (!fingerprint.equals(other.getFingerprint())) {
+                    return new Stored(422, toJson(Map.of("error", "Idempotency-Key reused with a different request")), null, true);
+                }
+                return new Stored(other.getStatus(), other.getBody(), null, true);
+            }
+            // Its claimant died holding it; the lease has passed to this request
+        }
+
+        Query owned = Query.query(Criteria.where("_id").is(id).and("leaseOwner").is(owner));
+        held.put(id, owner);
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            held.remove(id, owner);
+            // Released so the client can retry; the balance paths move money atomically or not at all
+            mongoTemplate.remove(owned, IdempotencyRecord.class);
+            throw e;
+        }
+        held.remove(id, owner);
+        executions.increment();
+        int status = response.getStatusCode().value();
+        String body = toJson(response.getBody());
+        boolean recorded = mongoTemplate.updateFirst(owned,
+                new Update().set("status", status).set("body", body).unset("leaseUntil").unset("leaseOwner"),
+                IdempotencyRecord.class).getModifiedCount() == 1;
+        if (!recorded) {
+            leasesLost.increment();
+            log.warn("Idempotency lease for {} was lost while the request ran; its response was not stored", id);
+        }
+        return new Stored(status, body, response, false);
+    }
+
+    // Keeps every claim this node is running alive; a renewal that misses means the lease was taken over
+    private void renewLeases() {
+        for (Map.Entry<String, String> claim : held.entrySet()) {
+            try {
+                long renewed = mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(claim.getKey()).and("leaseOwner").is(claim.getValue())
+                                .and("status").is(null)),
+                        new Update().set("leaseUntil", Instant.now().plus(pendingLease)),
+                        IdempotencyRecord.class).getModifiedCount();
+                if (renewed == 0 && held.remove(claim.getKey(), claim.getValue())) {
+                    leasesLost.increment();
+                    log.warn("Idempotency lease for {} could not be renewed", claim.getKey());
+                }
+            } catch (RuntimeException e) {
+                log.warn("Idempotency lease renewal failed for {}: {}", claim.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /*
+     * The finished record, or null once this caller has taken over a claim whose lease ran out.
+     * The takeover is a conditional update, so of several waiters exactly one runs the request.
+     */
+    private IdempotencyRecord awaitCompletion(String id, String fingerprint, String owner) {
+        long deadline = System.nanoTime() + PENDING_WAIT.toNanos();
+        long sleepMillis = 20;
+        while (true) {
+            IdempotencyRecord record = mongoTemplate.findById(id, IdempotencyRecord.class);
+            if (record == null) {
+                throw new IdempotencyConflictException("Request with this Idempotency-Key failed, retry it");
+            }
+            if (record.getStatus() != null) return record;
+            Instant now = Instant.now();
+            // Claims written before leases existed have none and count as lapsed
+            if (fingerprint.equals(record.getFingerprint())
+                    && (record.getLeaseUntil() == null || record.getLeaseUntil().isBefore(now))) {
+                boolean taken = mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(id).and("status").is(null).and("leaseUntil").is(record.getLeaseUntil())),
+                        new Update().set("leaseUntil", now.plus(pendingLease)).set("leaseOwner", owner),
+                        IdempotencyRecord.class).getModifiedCount() == 1;
+                if (taken) return null;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IdempotencyConflictException("Request with this Idempotency-Key is still in progress");
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdempotencyConflictException("Interrupted while waiting for in-flight request");
+            }
+            sleepMillis = Math.min(sleepMillis * 2, 500);
+        }
+    }
+
+    private ResponseEntity<?> replay(Stored stored) {
+        replays.increment();
+        return ResponseEntity.status(stored.status())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotent-Replayed", "true")
+                .body(stored.body());
+    }
+
+    private static ResponseEntity<?> mismatch() {
+        return ResponseEntity.status(422).body(Map.of("error", "Idempotency-Key reused with a different request"));
+    }
+
+    // Oldest finished entries go first once over capacity; expired ones are dropped from the head
+    private void evict() {
+        int budget = insertionOrder.size();
+        while (entries.size() > maxEntries && budget-- > 0) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) return;
+            Entry entry = entries.get(oldest);
+            if (entry != null && !entry.result().isDone()) {
+                insertionOrder.add(oldest);
+                continue;
+            }
+            if (entry != null) entries.remove(oldest, entry);
+        }
+        String head = insertionOrder.peek();
+        while (head != null) {
+            Entry entry = entries.get(head);
+            if (entry != null && !entry.isExpired(ttlNanos)) return;
+            if (entry != null) entries.remove(head, entry);
+            insertionOrder.remove(head);
+            head = insertionOrder.peek();
+        }
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot store response for replay", e);
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot fingerprint request", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        leaseRenewal.shutdownNow();
+    }
+
+    private record Entry(CompletableFuture<Stored> result, long createdNanos, String fingerprint) {
+        boolean isExpired(long ttlNanos) {
+            return System.nanoTime() - createdNanos > ttlNanos;
+        }
+    }
+
+    private record Stored(int status, String body, ResponseEntity<?> original, boolean replayed) {}
+}
@@ -0,0 +1,7 @@
+package com.bank.service;
+
+public class InsufficientFundsException extends RuntimeException {
+    public InsufficientFundsException() {
+        super("Insufficient funds");
+    }
+}
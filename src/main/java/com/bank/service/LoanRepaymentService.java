@@ -0,0 +1,292 @@
+package com.bank.service;
+
+import com.bank.dto.AutoDebitSummary;
+import com.bank.dto.LoanRepayment;
+import com.bank.entity.Account;
+import com.bank.entity.Loan;
+import com.bank.entity.Transaction;
+import com.bank.entity.User;
+import com.bank.event.AccountEventBus;
+import com.bank.loan.AmortizationEngine;
+import com.bank.loan.LoanPortfolioStats;
+import com.bank.loan.LoanStatus;
+import com.bank.money.Money;
+import com.bank.transaction.TransactionType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loan repayments. A payment covers accrued interest first, then principal. It runs in the
+ * borrower's {@link AccountLanes} lane like a transfer: a guarded debit of the user, then one
+ * conditional $inc on the loan guarded on the principal and interest it consumes, which is
+ * also what makes completion exact (the loan becomes COMPLETED in the same update that
+ * takes its last principal). With transactions the debit, the loan update and the ledger row
+ * commit together; without, a lost loan update puts the debit back before failing.
+ *
+ * <p>The auto-debit run takes the installments due on a date in chunks ordered by due date
+ * and {@code _id}, and queues each on its borrower's lane, so the lanes are the partitions:
+ * different borrowers are debited in parallel and each borrower's loans one after another.
+ * An installment is taken only if the loan's {@code nextDueDate} is still the one it was read
+ * with. A loan more than one installment behind comes round again at its new due date later
+ * in the same run, so every installment due by the date is attempted, oldest first. A manual
+ * payment of at least the EMI while an installment is due settles it the same way; smaller
+ * or early payments go against the balance and leave the schedule alone.
+ */
+@Service
+public class LoanRepaymentService {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanRepaymentService.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final AccountLanes lanes;
+    private final MongoTransactions transactions;
+    private final TransactionService transactionService;
+    private final AccountEventBus events;
+    private final AmortizationEngine amortization;
+    private final LoanPortfolioStats stats;
+    private final MeterRegistry meterRegistry;
+    private final int chunkSize;
+    private final Timer autoDebitTimer;
+
+    public LoanRepaymentService(MongoTemplate mongoTemplate, AccountLanes lanes, MongoTransactions transactions,
+                                TransactionService transactionService, AccountEventBus events,
+                                AmortizationEngine amortization, LoanPortfolioStats stats, MeterRegistry meterRegistry,
+                                @Value("${bank.loans.auto-debit.chunk-size:1000}") int chunkSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.lanes = lanes;
+        this.transactions = transactions;
+        this.transactionService = transactionService;
+        this.events = events;
+        this.amortization = amortization;
+        this.stats = stats;
+        this.meterRegistry = meterRegistry;
+        this.chunkSize = chunkSize;
+        this.autoDebitTimer = Timer.builder("bank.loans.auto-debit.run").register(meterRegistry);
+    }
+
+    private Counter outcome(String mode, String outcome) {
+        return Counter.builder("bank.loans.repayments").tag("mode", mode).tag("outcome", outcome).register(meterRegistry);
+    }
+
+    /**
+     * Pays {@code amount} (the EMI when null) towards the loan from its borrower's balance. A
+     * payment of at least the EMI while an installment is due settles that installment.
+     */
+    public LoanRepayment repay(Loan loan, Money amount) {
+        if (amount != null && amount.signum() <= 0) throw new IllegalArgumentException("Amount must be positive");
+        try {
+            LoanRepayment repayment = AccountLanes.await(submit(loan, amount, null));
+            outcome("manual", "paid").increment();
+            return repayment;
+        } catch (InsufficientFundsException e) {
+            outcome("manual", "insufficient").increment();
+            throw e;
+        } catch (LoanTransitionException e) {
+            outcome("manual", "conflict").increment();
+            throw e;
+        }
+    }
+
+    /** Takes one installment from every disbursed loan due on or before {@code date}. */
+    public AutoDebitSummary autoDebit(LocalDate date) {
+        Instant dueBy = date.atStartOfDay(ZoneOffset.UTC).toInstant();
+        AtomicLong paid = new AtomicLong();
+        AtomicLong insufficient = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long due = 0;
+        long started = System.nanoTime();
+
+        // Keyset over (nextDueDate, _id), the order of the status_due_id index, so each chunk is a seek
+        Instant afterDue = null;
+        ObjectId afterId = null;
+        while (true) {
+            Criteria criteria = Criteria.where("status").is(LoanStatus.DISBURSED);
+            if (afterDue == null) {
+                criteria = criteria.and("nextDueDate").lte(dueBy);
+            } else {
+                criteria = criteria.andOperator(Criteria.where("nextDueDate").lte(dueBy), new Criteria().orOperator(
+                        Criteria.where("nextDueDate").gt(afterDue),
+                        Criteria.where("nextDueDate").is(afterDue).and("_id").gt(afterId)));
+            }
+            Query query = Query.query(criteria)
+                    .with(Sort.by(Sort.Order.asc("nextDueDate"), Sort.Order.asc("_id")))
+                    .limit(chunkSize);
+            // The lane key and the cursor; each loan is read in full inside its lane
+            query.fields().include("userId", "nextDueDate");
+            List<Loan> chunk = mongoTemplate.find(query, Loan.class);
+            if (chunk.isEmpty()) break;
+            due += chunk.size();
+
+            List<CompletableFuture<?>> pending = new ArrayList<>(chunk.size());
+            for (Loan loan : chunk) {
+                CompletableFuture<LoanRepayment> posted;
+                try {
+                    posted = submit(loan, null, dueBy);
+                } catch (RejectedExecutionException e) {
+                    posted = CompletableFuture.failedFuture(e);
+                }
+                pending.add(posted.handle((repayment, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause == null) {
+                        paid.incrementAndGet();
+                    } else if (cause instanceof InsufficientFundsException) {
+                        insufficient.incrementAndGet();
+                    } else if (cause instanceof LoanTransitionException) {
+                        skipped.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                        log.warn("Auto-debit of loan {} failed: {}", loan.getId(), cause.getMessage());
+                    }
+                    return null;
+                }));
+            }
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+            Loan last = chunk.get(chunk.size() - 1);
+            afterDue = last.getNextDueDate();
+            afterId = new ObjectId(last.getId());
+        }
+
+        long elapsedNanos = System.nanoTime() - started;
+        autoDebitTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        outcome("auto", "paid").increment(paid.get());
+        outcome("auto", "insufficient").increment(insufficient.get());
+        outcome("auto", "skipped").increment(skipped.get());
+        outcome("auto", "failed").increment(failed.get());
+        log.info("Auto-debit for {}: {} due, {} paid, {} insufficient funds, {} skipped, {} failed in {} ms",
+                date, due, paid.get(), insufficient.get(), skipped.get(), failed.get(), elapsedNanos / 1_000_000);
+        return new AutoDebitSummary(date, due, paid.get(), insufficient.get(), skipped.get(), failed.get());
+    }
+
+    private Money installment(Loan loan) {
+        if (loan.getEmi() != null) return loan.getEmi();
+        BigDecimal rate = loan.getInterestRate() != null ? loan.getInterestRate()
+                : BigDecimal.valueOf(loan.getLoanType().getDefaultInterestRate());
+        return amortization.schedule(loan.getAmount(), loan.getTenureMonths(), rate).emi();
+    }
+
+    // The loan is read again inside the lane, so a queued payment sees every earlier one for the borrower
+    private CompletableFuture<LoanRepayment> submit(Loan loan, Money amount, Instant dueBy) {
+        return lanes.execute(loan.getUserId(), () -> {
+            Posted posted;
+            if (transactions.isSupported()) {
+                posted = transactions.execute(ops -> post(ops, loan.getId(), amount, dueBy, true));
+                // Published only once committed, like transfers
+                events.publishLocal(List.of(posted.entry()));
+            } else {
+                posted = post(mongoTemplate, loan.getId(), amount, dueBy, false);
+            }
+            stats.repaid(posted.loan(), posted.repayment().principal());
+            if (posted.loan().getStatus() == LoanStatus.COMPLETED) stats.moved(posted.loan(), LoanStatus.DISBURSED, LoanStatus.COMPLETED);
+            return posted.repayment();
+        });
+    }
+
+    private Posted post(MongoTemplate ops, String loanId, Money requested, Instant dueBy, boolean inTransaction) {
+        Loan loan = ops.findById(loanId, Loan.class);
+        if (loan == null) throw new NoSuchElementException("Loan not found");
+        if (loan.getStatus() != LoanStatus.DISBURSED) throw new LoanTransitionException("Loan is not in repayment");
+        Instant now = Instant.now();
+        Instant asOf = dueBy != null ? dueBy : now;
+        Instant dueSeen = loan.getNextDueDate();
+        if (dueBy != null && (dueSeen == null || dueSeen.isAfter(dueBy))) {
+            // Settled or closed by a payment made since the run read it
+            throw new LoanTransitionException("Installment is no longer due");
+        }
+        Money emi = installment(loan);
+        Money amount = requested != null ? requested : emi;
+        // Only a due installment paid in full moves the due date on
+        boolean settlesInstallment = dueSeen != null && !dueSeen.isAfter(asOf) && !amount.isLessThan(emi);
+
+        long interestOwed = Math.max(0, loan.getAccruedInterest() != null ? loan.getAccruedInterest().minorUnits() : 0);
+        long principalOwed = (loan.getOutstandingPrincipal() != null ? loan.getOutstandingPrincipal() : loan.getAmount()).minorUnits();
+        long pay = Math.min(amount.minorUnits(), Math.addExact(interestOwed, principalOwed));
+        if (pay <= 0) throw new IllegalArgumentException("Nothing left to repay");
+        long interest = Math.min(pay, interestOwed);
+        long principal = pay - interest;
+        // Outstanding principal only ever falls, so with the guard below this takes exactly the rest
+        boolean completes = principal == principalOwed;
+
+        User debited = ops.findAndModify(
+                Query.query(Criteria.where("_id").is(loan.getUserId()).and("balance").gte(pay)),
+                new Update().inc("balance", -pay).inc("totalTransactions", 1L),
+                FindAndModifyOptions.options().returnNew(true), User.class);
+        if (debited == null) throw new InsufficientFundsException();
+
+        // Interest accrual runs outside the lane and only ever adds, so these guards hold against it
+        Criteria guard = Criteria.where("_id").is(loan.getId()).and("status").is(LoanStatus.DISBURSED)
+                .and("outstandingPrincipal").gte(principal)
+                .and("nextDueDate").is(dueSeen);
+        if (interest > 0) guard.and("accruedInterest").gte(interest);
+        Update update = new Update()
+                .inc("outstandingPrincipal", -principal)
+                .inc("accruedInterest", -interest)
+                .inc("version", 1L);
+        if (completes) {
+            update.set("status", LoanStatus.COMPLETED).set("completedDate", now).unset("nextDueDate");
+        } else if (settlesInstallment) {
+            update.inc("installmentsPaid", 1).set("nextDueDate", nextDueDate(loan, dueSeen));
+        }
+        Loan updated = ops.findAndModify(Query.query(guard), update, FindAndModifyOptions.options().returnNew(true), Loan.class);
+        if (updated == null) {
+            // Changed since the read above; in a transaction the abort undoes the debit
+            if (!inTransaction) {
+                ops.updateFirst(Query.query(Criteria.where("_id").is(loan.getUserId())),
+                        new Update().inc("balance", pay).inc("totalTransactions", -1L), User.class);
+            }
+            throw new LoanTransitionException("Loan was updated concurrently, retry the repayment");
+        }
+        ops.upsert(Query.query(Criteria.where("userId").is(loan.getUserId())), new Update().inc("balance", -pay), Account.class);
+
+        Transaction entry = new Transaction();
+        entry.setUserId(loan.getUserId());
+        entry.setAmount(Money.ofMinor(pay));
+        entry.setType(TransactionType.LOAN_REPAYMENT);
+        entry.setDescription((loan.getLoanType() != null ? loan.getLoanType().getDisplayName() : "Loan") + " repayment");
+        entry.setBalanceAfter(debited.getBalance());
+        if (inTransaction) {
+            ops.insert(entry);
+        } else {
+            transactionService.record(entry);
+        }
+        LoanRepayment repayment = new LoanRepayment(loan.getId(), Money.ofMinor(pay), Money.ofMinor(principal),
+                Money.ofMinor(interest), updated.getOutstandingPrincipal(), updated.getStatus(), updated.getNextDueDate());
+        return new Posted(repayment, entry, updated);
+    }
+
+    // Installments fall on the disbursement day of each month, so short months do not shift later ones
+    private static Instant nextDueDate(Loan loan, Instant dueSeen) {
+        int paid = loan.getInstallmentsPaid() != null ? loan.getInstallmentsPaid() : 0;
+        if (loan.getDisbursementDate() == null) return dueSeen.atZone(ZoneOffset.UTC).plusMonths(1).toInstant();
+        return loan.getDisbursementDate().truncatedTo(ChronoUnit.DAYS).atZone(ZoneOffset.UTC)
+                .plusMonths(paid + 2L).toInstant();
+    }
+
+    private record Posted(LoanRepayment repayment, Transaction entry, Loan loan) {}
+}
@@ -1,129 +1,534 @@
 package com.bank.service;
 
+import com.bank.dto.LoanDecisionResult;
+import com.bank.dto.LoanPage;
+import com.bank.dto.LoanQuote;
+import com.bank.dto.UserDTO;
+import com.bank.entity.Account;
 import com.bank.entity.Loan;
+import com.bank.entity.Transaction;
 import com.bank.entity.User;
+import com.bank.event.AccountEventBus;
+import com.bank.loan.AmortizationEngine;
+import com.bank.loan.LoanApplicant;
+import com.bank.loan.LoanCursor;
+import com.bank.loan.LoanDecision;
+import com.bank.loan.LoanFilter;
+import com.bank.loan.LoanPortfolioStats;
+import com.bank.loan.LoanSchedule;
 import com.bank.loan.LoanStatus;
 import com.bank.loan.LoanType;
+import com.bank.money.Money;
 import com.bank.repository.LoanRepository;
-import com.bank.repository.UserRepository;
+import com.bank.transaction.TransactionType;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 @Service
 public class LoanService {
     
+    private static final Logger log = LoggerFactory.getLogger(LoanService.class);
+    
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    
     private final LoanRepository loanRepository;
-    private final UserRepository userRepository;
-    private final com.bank.repository.AccountRepository accountRepository;
+    private final UserService userService;
+    private final AccountLanes lanes;
+    private final TransactionService transactionService;
+    private final MongoTemplate mongoTemplate;
+    private final AmortizationEngine amortization;
+    private final MongoTransactions transactions;
+    private final AccountEventBus events;
+    private final LoanPortfolioStats stats;
+    private final int maxBulkDecisions;
+    private final Semaphore bulkPermits;
 
-    public LoanService(LoanRepository loanRepository, UserRepository userRepository, com.bank.repository.AccountRepository accountRepository) {
+    public LoanService(LoanRepository loanRepository, UserService userService,
+                       AccountLanes lanes, TransactionService transactionService, MongoTemplate mongoTemplate,
+                       AmortizationEngine amortization, MongoTransactions transactions,
+                       AccountEventBus events, LoanPortfolioStats stats,
+                       @Value("${bank.loans.bulk.max-decisions:5000}") int maxBulkDecisions,
+                       @Value("${bank.loans.bulk.concurrency:32}") int bulkConcurrency) {
         this.loanRepository = loanRepository;
-        this.userRepository = userRepository;
-        this.accountRepository = accountRepository;
+        this.userService = userService;
+        this.lanes = lanes;
+        this.transactionService = transactionService;
+        this.mongoTemplate = mongoTemplate;
+        this.amortization = amortization;
+        this.transactions = transactions;
+        this.events = events;
+        this.stats = stats;
+        this.maxBulkDecisions = maxBulkDecisions;
+        this.bulkPermits = new Semaphore(bulkConcurrency);
     }
     
-    public Loan applyForLoan(String userId, LoanType loanType, BigDecimal amount, 
+    public Loan applyForLoan(String userId, LoanType loanType, Money amount, 
                              Integer tenureMonths, String purpose) {
-        User user = userRepository.findById(userId)
+        UserDTO user = userService.findProfile(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
+        if (loanType == null) throw new IllegalArgumentException("Loan type is required");
+        if (tenureMonths == null) throw new IllegalArgumentException("Tenure is required");
         // Use default interest rate for the loan type
         BigDecimal interestRate = BigDecimal.valueOf(loanType.getDefaultInterestRate());
+        // Rejects what the schedule cannot be computed for (tenure range, amount), so approval cannot fail on it
+        amortization.schedule(amount, tenureMonths, interestRate);
         
-        Loan loan = new Loan(user, loanType, amount, tenureMonths, interestRate, purpose);
-        return loanRepository.save(loan);
+        Loan loan = new Loan(userId, new LoanApplicant(user.name(), user.email()), loanType, amount, tenureMonths, interestRate, purpose);
+        Loan saved = loanRepository.save(loan);
+        stats.applied(saved);
+        return saved;
     }
     
-    public List<Loan> getUserLoans(String userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        return loanRepository.findByUserOrderByApplicationDateDesc(user);
+    /**
+     * One page of loans matching {@code filter}, newest application first. Seeks past the
+     * cursor on the (status|userId, applicationDate, _id) indexes, so cost depends on the
+     * page size and filter selectivity, not on the size of the loan book.
+     */
+    public LoanPage findLoans(LoanFilter filter, String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        
+        Criteria criteria = new Criteria();
+        if (filter.userId() != null) criteria.and("userId").is(filter.userId());
+        if (filter.status() != null) criteria.and("status").is(filter.status());
+        if (filter.loanType() != null) criteria.and("loanType").is(filter.loanType());
+        if (filter.minAmount() != null || filter.maxAmount() != null) {
+            Criteria amount = criteria.and("amount");
+            if (filter.minAmount() != null) amount.gte(filter.minAmount().minorUnits());
+            if (filter.maxAmount() != null) amount.lte(filter.maxAmount().minorUnits());
+        }
+        if (filter.from() != null || filter.to() != null) {
+            Criteria range = criteria.and("applicationDate");
+            if (filter.from() != null) range.gte(filter.from());
+            if (filter.to() != null) range.lt(filter.to());
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            LoanCursor after = LoanCursor.decode(cursor);
+            criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(
+                    Criteria.where("applicationDate").lt(after.applicationDate()),
+                    Criteria.where("applicationDate").is(after.applicationDate()).and("_id").lt(after.id())));
+        }
+        
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Order.desc("applicationDate"), Sort.Order.desc("_id")))
+                .limit(pageSize + 1);
+        List<Loan> rows = mongoTemplate.find(query, Loan.class);
+        if (rows.size() <= pageSize) return new LoanPage(withCurrentApplicants(rows), null);
+        
+        List<Loan> page = withCurrentApplicants(rows.subList(0, pageSize));
+        Loan last = page.get(pageSize - 1);
+        return new LoanPage(page, new LoanCursor(last.getApplicationDate(), new ObjectId(last.getId())).encode());
     }
     
-    public List<Loan> getPendingLoans() {
-        return loanRepository.findByStatusOrderByApplicationDateDesc(LoanStatus.PENDING);
+    /** Maps an applicant given as a user id or an email to the user id loans are keyed by. */
+    public Optional<String> resolveApplicant(String applicant) {
+        if (!applicant.contains("@")) return Optional.of(applicant);
+        return userService.findProfileByEmail(applicant).map(UserDTO::id);
     }
     
-    public List<Loan> getAllLoans() {
-        return loanRepository.findAllByOrderByApplicationDateDesc();
+    // One $in for the whole page (usually none, thanks to the near-cache) instead of a fetch per loan
+    private List<Loan> withCurrentApplicants(List<Loan> loans) {
+        Set<String> userIds = new HashSet<>();
+        for (Loan loan : loans) userIds.add(loan.getUserId());
+        Map<String, UserDTO> profiles = userService.findProfiles(userIds);
+        for (Loan loan : loans) {
+            UserDTO profile = profiles.get(loan.getUserId());
+            if (profile != null) loan.setApplicant(new LoanApplicant(profile.name(), profile.email()));
+        }
+        return loans;
     }
     
-    public Loan approveLoan(String loanId, String adminId, String comments) {
-        Loan loan = loanRepository.findById(loanId)
+    /**
+     * Approves and disburses a pending loan. Each state change is one findAndModify filtered
+     * on the expected status and version, so of two concurrent approvals exactly one wins and
+     * only the winner moves money. See {@link #approveForUser} for how the credit is applied.
+     */
+    public Loan approveLoan(String loanId, String adminId, String comments, Long expectedVersion) {
+        Loan current = loanRepository.findById(loanId)
                 .orElseThrow(() -> new RuntimeException("Loan not found"));
-        
-        // Defensive fixes for potential legacy nulls
-        if (loan.getApplicationDate() == null) loan.setApplicationDate(Instant.now());
-        if (loan.getStatus() == null) loan.setStatus(LoanStatus.PENDING);
-        if (loan.getInterestRate() == null) {
-            BigDecimal rate = loan.getLoanType() != null ? BigDecimal.valueOf(loan.getLoanType().getDefaultInterestRate()) : BigDecimal.valueOf(10.0);
-            loan.setInterestRate(rate);
+        Long version = expectedVersion != null ? expectedVersion : current.getVersion();
+        Outcome outcome = approveForUser(current.getUserId(), List.of(new Approval(current, version, comments)), adminId).get(0);
+        if (outcome.failure() != null) throw outcome.failure();
+        return outcome.disbursed();
+    }
+    
+    /**
+     * Applies many decisions at once. Loans are read with one $in query; rejections run as
+     * independent transitions and approvals are grouped by applicant, so each applicant gets
+     * one balance credit however many of their loans are approved. Groups run on virtual
+     * threads, at most {@code bank.loans.bulk.concurrency} at a time across all callers.
+     * Results come back in request order.
+     */
+    public List<LoanDecisionResult> decideAll(List<BulkDecision> decisions, String adminId) {
+        if (decisions.size() > maxBulkDecisions) {
+            throw new IllegalArgumentException("At most " + maxBulkDecisions + " decisions per request");
         }
-        
-        if (loan.getStatus() != LoanStatus.PENDING) {
-            throw new RuntimeException("Loan is not in pending status");
+        Map<String, LoanDecisionResult> results = new ConcurrentHashMap<>();
+        Set<String> ids = new LinkedHashSet<>();
+        for (BulkDecision decision : decisions) {
+            if (decision.loanId() != null) ids.add(decision.loanId());
         }
+        Map<String, Loan> loans = new HashMap<>();
+        for (Loan loan : mongoTemplate.find(Query.query(Criteria.where("_id").in(ids)), Loan.class)) loans.put(loan.getId(), loan);
         
-        loan.setStatus(LoanStatus.APPROVED);
-        loan.setApprovalDate(Instant.now());
-        loan.setApprovedBy(adminId);
-        loan.setAdminComments(comments);
+        List<Runnable> tasks = new ArrayList<>();
+        Map<String, List<Approval>> approvalsByUser = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>();
+        for (BulkDecision decision : decisions) {
+            String loanId = decision.loanId();
+            if (loanId == null || decision.decision() == null) continue;
+            if (!seen.add(loanId)) continue;
+            Loan loan = loans.get(loanId);
+            if (loan == null) {
+                results.put(loanId, LoanDecisionResult.failed(loanId, "Loan not found"));
+                continue;
+            }
+            Long version = decision.version() != null ? decision.version() : loan.getVersion();
+            if (decision.decision() == LoanDecision.REJECT) {
+                tasks.add(() -> {
+                    try {
+                        Loan rejected = reject(loan, version, adminId, decision.comments());
+                        results.put(loanId, LoanDecisionResult.applied(loanId, rejected.getStatus().name()));
+                    } catch (RuntimeException e) {
+                        results.put(loanId, LoanDecisionResult.failed(loanId, e.getMessage()));
+                    }
+                });
+            } else {
+                approvalsByUser.computeIfAbsent(loan.getUserId(), u -> new ArrayList<>())
+                        .add(new Approval(loan, version, decision.comments()));
+            }
+        }
+        approvalsByUser.forEach((userId, approvals) -> tasks.add(() -> {
+            try {
+                List<Outcome> outcomes = approveForUser(userId, approvals, adminId);
+                for (int i = 0; i < approvals.size(); i++) {
+                    String loanId = approvals.get(i).loan().getId();
+                    Outcome outcome = outcomes.get(i);
+                    results.put(loanId, outcome.failure() == null
+                            ? LoanDecisionResult.applied(loanId, outcome.disbursed().getStatus().name())
+                            : LoanDecisionResult.failed(loanId, outcome.failure().getMessage()));
+                }
+            } catch (RuntimeException e) {
+                for (Approval approval : approvals) {
+                    results.put(approval.loan().getId(), LoanDecisionResult.failed(approval.loan().getId(), e.getMessage()));
+                }
+            }
+        }));
+        runBounded(tasks);
         
-        Loan savedLoan = loanRepository.save(loan);
-
-
-        // Credit loan amount to user's account and update user balance
-        String userId = loan.getUser().getId();
-        BigDecimal loanAmount = loan.getAmount();
-
-        // Update Account balance, create if missing
-        accountRepository.findByUserId(userId).ifPresentOrElse(account -> {
-            account.setBalance(account.getBalance().add(loanAmount));
-            accountRepository.save(account);
-        }, () -> {
-            com.bank.entity.Account newAccount = new com.bank.entity.Account();
-            newAccount.setUserId(userId);
-            newAccount.setBalance(loanAmount);
-            accountRepository.save(newAccount);
-        });
-
-        // Update User balance
-        User user = loan.getUser();
-        user.setBalance(user.getBalance().add(loanAmount));
-        userRepository.save(user);
-
-        return savedLoan;
+        List<LoanDecisionResult> ordered = new ArrayList<>(decisions.size());
+        for (BulkDecision decision : decisions) {
+            LoanDecisionResult result = decision.loanId() == null ? null : results.remove(decision.loanId());
+            if (result == null) {
+                result = decision.loanId() == null || decision.decision() == null
+                        ? LoanDecisionResult.failed(decision.loanId(), "loanId and decision are required")
+                        : LoanDecisionResult.failed(decision.loanId(), "Duplicate loan id");
+            }
+            ordered.add(result);
+        }
+        return ordered;
     }
     
-    public Loan rejectLoan(String loanId, String adminId, String comments) {
-        Loan loan = loanRepository.findById(loanId)
-                .orElseThrow(() -> new RuntimeException("Loan not found"));
-        
-        // Defensive fixes for potential legacy nulls
-        if (loan.getApplicationDate() == null) loan.setApplicationDate(Instant.now());
-        if (loan.getStatus() == null) loan.setStatus(LoanStatus.PENDING);
-        if (loan.getInterestRate() == null) {
-            BigDecimal rate = loan.getLoanType() != null ? BigDecimal.valueOf(loan.getLoanType().getDefaultInterestRate()) : BigDecimal.valueOf(10.0);
-            loan.setInterestRate(rate);
+    private void runBounded(List<Runnable> tasks) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Runnable task : tasks) {
+                executor.execute(() -> {
+                    bulkPermits.acquireUninterruptibly();
+                    try {
+                        task.run();
+                    } finally {
+                        bulkPermits.release();
+                    }
+                });
+            }
+        }
+    }
+    
+    /*
+     * Approves and disburses one applicant's loans, returning one outcome per approval in
+     * order: the disbursed loan, or why it was not disbursed. The winners' amounts are
+     * credited once. With transactions the transitions, the User and Account credits and the
+     * ledger rows commit together. On a standalone server the loans are marked DISBURSED with
+     * disbursementPosted=false, then credited in the user's lane; a credit that is rejected,
+     * fails or is cut short by a crash is left to the sweeper, so it lands exactly once.
+     */
+    private List<Outcome> approveForUser(String userId, List<Approval> approvals, String adminId) {
+        if (transactions.isSupported()) {
+            Disbursed result = transactions.execute(ops -> {
+                List<Outcome> outcomes = new ArrayList<>(approvals.size());
+                List<Loan> winners = disburse(ops, approvals, adminId, outcomes, true);
+                if (winners.isEmpty()) return new Disbursed(outcomes, List.of());
+                long total = 0;
+                for (Loan loan : winners) total = Math.addExact(total, loan.getAmount().minorUnits());
+                User credited = ops.findAndModify(Query.query(Criteria.where("_id").is(userId)),
+                        new Update().inc("balance", total).inc("totalTransactions", (long) winners.size()),
+                        FindAndModifyOptions.options().returnNew(true), User.class);
+                if (credited == null) throw new NoSuchElementException("User not found");
+                ops.upsert(Query.query(Criteria.where("userId").is(userId)), new Update().inc("balance", total), Account.class);
+                // Walk back from the exact post-credit balance to stamp each row
+                List<Transaction> entries = new ArrayList<>(winners.size());
+                Money after = credited.getBalance();
+                for (int i = winners.size() - 1; i >= 0; i--) {
+                    entries.add(0, disbursementEntry(winners.get(i), after));
+                    after = after.minus(winners.get(i).getAmount());
+                }
+                ops.insert(entries, Transaction.class);
+                return new Disbursed(outcomes, entries);
+            });
+            // Published only once committed, like transfers
+            if (!result.entries().isEmpty()) events.publishLocal(result.entries());
+            recordDisbursed(result.outcomes());
+            return result.outcomes();
         }
         
-        if (loan.getStatus() != LoanStatus.PENDING) {
-            throw new RuntimeException("Loan is not in pending status");
+        List<Outcome> outcomes = new ArrayList<>(approvals.size());
+        List<Loan> winners = disburse(mongoTemplate, approvals, adminId, outcomes, false);
+        if (winners.isEmpty()) return outcomes;
+        recordDisbursed(outcomes);
+        try {
+            AccountLanes.await(lanes.execute(userId, () -> {
+                for (Loan loan : winners) postDisbursement(loan);
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            // The loans stay DISBURSED: the transition is what the caller decided, the credit follows
+            log.warn("Disbursement credit for user {} deferred to the sweeper: {}", userId, e.getMessage());
+        }
+        return outcomes;
+    }
+    
+    /**
+     * Credits standalone disbursements whose credit has not been confirmed for at least
+     * {@code olderThan}, oldest first, one lane task per user. Returns how many were posted.
+     */
+    public int postPendingDisbursements(Duration olderThan, int limit) {
+        Query query = Query.query(Criteria.where("disbursementPosted").is(false)
+                        .and("disbursementDate").lt(Instant.now().minus(olderThan)))
+                .with(Sort.by("disbursementDate")).limit(limit);
+        Map<String, List<Loan>> byUser = new LinkedHashMap<>();
+        for (Loan loan : mongoTemplate.find(query, Loan.class)) {
+            byUser.computeIfAbsent(loan.getUserId(), u -> new ArrayList<>()).add(loan);
+        }
+        int posted = 0;
+        for (Map.Entry<String, List<Loan>> user : byUser.entrySet()) {
+            try {
+                AccountLanes.await(lanes.execute(user.getKey(), () -> {
+                    for (Loan loan : user.getValue()) postDisbursement(loan);
+                    return null;
+                }));
+                posted += user.getValue().size();
+            } catch (RuntimeException e) {
+                log.warn("Could not post disbursements for user {}: {}", user.getKey(), e.getMessage());
+            }
+        }
+        return posted;
+    }
+    
+    /*
+     * Applies one standalone disbursement, in the user's lane. Every step is idempotent, so it
+     * can be retried from any point: User and Account are credited only while they do not yet
+     * carry the loan id as a marker, the ledger row has the id fixed at disbursement, and the
+     * markers are pulled once the loan records the credit as posted.
+     */
+    private void postDisbursement(Loan loan) {
+        String loanId = loan.getId();
+        String userId = loan.getUserId();
+        long amount = loan.getAmount().minorUnits();
+        User credited = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(userId).and("postedDisbursements").ne(loanId)),
+                new Update().inc("balance", amount).inc("totalTransactions", 1L).push("postedDisbursements", loanId),
+                FindAndModifyOptions.options().returnNew(true), User.class);
+        if (credited == null && !mongoTemplate.exists(Query.query(Criteria.where("_id").is(userId)), User.class)) {
+            throw new NoSuchElementException("User not found");
         }
+        mongoTemplate.upsert(Query.query(Criteria.where("userId").is(userId)),
+                new Update().setOnInsert("balance", Money.ZERO), Account.class);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("userId").is(userId).and("postedDisbursements").ne(loanId)),
+                new Update().inc("balance", amount).push("postedDisbursements", loanId), Account.class);
         
-        loan.setStatus(LoanStatus.REJECTED);
-        loan.setApprovalDate(Instant.now());
-        loan.setApprovedBy(adminId);
-        loan.setAdminComments(comments);
+        String entryId = loan.getDisbursementEntryId() != null ? loan.getDisbursementEntryId() : new ObjectId().toHexString();
+        if (credited != null || !mongoTemplate.exists(Query.query(Criteria.where("_id").is(entryId)), Transaction.class)) {
+            // A retry whose row was lost stamps the balance as it is now
+            Money after = credited != null ? credited.getBalance()
+                    : mongoTemplate.findById(userId, User.class).getBalance();
+            Transaction entry = disbursementEntry(loan, after);
+            entry.setId(entryId);
+            transactionService.record(entry);
+        }
         
-        return loanRepository.save(loan);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(loanId).and("disbursementPosted").is(false)),
+                new Update().set("disbursementPosted", true), Loan.class);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(userId)),
+                new Update().pull("postedDisbursements", loanId), User.class);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("userId").is(userId)),
+                new Update().pull("postedDisbursements", loanId), Account.class);
+    }
+    
+    /*
+     * PENDING -> APPROVED -> DISBURSED for each approval; losers are recorded and skipped. Both
+     * updates are built before the first write, so a loan whose schedule cannot be computed
+     * fails without leaving PENDING. Without a transaction any other failure is also confined
+     * to its loan, so the winners before and after it are still credited.
+     */
+    private List<Loan> disburse(MongoTemplate ops, List<Approval> approvals, String adminId, List<Outcome> outcomes,
+                                boolean inTransaction) {
+        List<Loan> winners = new ArrayList<>(approvals.size());
+        for (Approval approval : approvals) {
+            try {
+                Loan loan = approval.loan();
+                Update decided = decision(loan, adminId, approval.comments());
+                Update payout = disbursement(loan, inTransaction);
+                Loan approved = transition(ops, loan.getId(), LoanStatus.PENDING, LoanStatus.APPROVED,
+                        approval.version(), decided);
+                Loan disbursed = transition(ops, loan.getId(), LoanStatus.APPROVED, LoanStatus.DISBURSED,
+                        approved.getVersion(), payout);
+                winners.add(disbursed);
+                outcomes.add(new Outcome(disbursed, null));
+            } catch (LoanTransitionException | IllegalArgumentException e) {
+                outcomes.add(new Outcome(null, e));
+            } catch (RuntimeException e) {
+                if (inTransaction) throw e;
+                outcomes.add(new Outcome(null, e));
+            }
+        }
+        return winners;
+    }
+    
+    public Loan rejectLoan(String loanId, String adminId, String comments, Long expectedVersion) {
+        Loan current = loanRepository.findById(loanId)
+                .orElseThrow(() -> new RuntimeException("Loan not found"));
+        Long version = expectedVersion != null ? expectedVersion : current.getVersion();
+        return reject(current, version, adminId, comments);
+    }
+    
+    private Loan reject(Loan loan, Long version, String adminId, String comments) {
+        Loan rejected = transition(mongoTemplate, loan.getId(), LoanStatus.PENDING, LoanStatus.REJECTED, version,
+                decision(loan, adminId, comments));
+        stats.moved(rejected, LoanStatus.PENDING, LoanStatus.REJECTED);
+        return rejected;
+    }
+    
+    private void recordDisbursed(List<Outcome> outcomes) {
+        for (Outcome outcome : outcomes) {
+            if (outcome.disbursed() != null) stats.moved(outcome.disbursed(), LoanStatus.PENDING, LoanStatus.DISBURSED);
+        }
+    }
+    
+    // One conditional findAndModify: applies only if the loan is still in {@code from} at {@code version}
+    private static Loan transition(MongoTemplate ops, String loanId, LoanStatus from, LoanStatus to,
+                                   Long version, Update changes) {
+        if (!from.canMoveTo(to)) throw new IllegalStateException("Loan cannot move from " + from + " to " + to);
+        Query query = Query.query(Criteria.where("_id").is(loanId).and("status").is(from).and("version").is(version));
+        Loan moved = ops.findAndModify(query, changes.set("status", to).inc("version", 1L),
+                FindAndModifyOptions.options().returnNew(true), Loan.class);
+        if (moved == null) {
+            throw new LoanTransitionException("Loan is not in " + from.getDisplayName().toLowerCase()
+                    + " status or was changed by someone else");
+        }
+        return moved;
+    }
+    
+    private static Update decision(Loan loan, String adminId, String comments) {
+        Update update = new Update()
+                .set("approvalDate", Instant.now())
+                .set("approvedBy", adminId)
+                .set("adminComments", comments);
+        // Legacy loans may lack a rate; pin the type default so schedules stay stable
+        if (loan.getInterestRate() == null) update.set("interestRate", rate(loan));
+        return update;
+    }
+    
+    private static BigDecimal rate(Loan loan) {
+        if (loan.getInterestRate() != null) return loan.getInterestRate();
+        return loan.getLoanType() != null
+                ? BigDecimal.valueOf(loan.getLoanType().getDefaultInterestRate()) : BigDecimal.valueOf(10.0);
+    }
+    
+    // Interest starts accruing from the day of disbursement; the first EMI falls due a month later
+    private Update disbursement(Loan loan, boolean inTransaction) {
+        Instant now = Instant.now();
+        Instant day = now.truncatedTo(ChronoUnit.DAYS);
+        Update update = new Update()
+                .set("disbursementDate", now)
+                .set("outstandingPrincipal", loan.getAmount())
+                .set("accruedInterest", Money.ZERO)
+                .set("accrualCarry", 0L)
+                .set("accruedThrough", day)
+                .set("emi", schedule(loan).emi())
+                .set("installmentsPaid", 0)
+                .set("nextDueDate", day.atZone(ZoneOffset.UTC).plusMonths(1).toInstant())
+                .set("disbursementPosted", inTransaction);
+        // Without a transaction the credit follows the transition, and its ledger row needs a stable id
+        if (!inTransaction) update.set("disbursementEntryId", new ObjectId().toHexString());
+        return update;
+    }
+    
+    private static Transaction disbursementEntry(Loan loan, Money balanceAfter) {
+        Transaction tx = new Transaction();
+        tx.setUserId(loan.getUserId());
+        tx.setAmount(loan.getAmount());
+        tx.setType(TransactionType.LOAN_DISBURSEMENT);
+        tx.setDescription(disbursementDescription(loan));
+        tx.setBalanceAfter(balanceAfter);
+        return tx;
+    }
+    
+    private static String disbursementDescription(Loan loan) {
+        return (loan.getLoanType() != null ? loan.getLoanType().getDisplayName() : "Loan") + " disbursement";
+    }
+    
+    /** EMI and totals for a prospective loan at the type's default rate. */
+    public LoanQuote quote(LoanType loanType, Money amount, int tenureMonths) {
+        LoanSchedule schedule = amortization.schedule(amount, tenureMonths,
+                BigDecimal.valueOf(loanType.getDefaultInterestRate()));
+        return new LoanQuote(loanType, schedule.principal(), tenureMonths, schedule.annualRate(),
+                schedule.emi(), schedule.totalInterest(), schedule.totalPayment());
+    }
+    
+    public LoanSchedule schedule(Loan loan) {
+        if (loan.getTenureMonths() == null) throw new IllegalArgumentException("Loan has no tenure");
+        return amortization.schedule(loan.getAmount(), loan.getTenureMonths(), rate(loan));
     }
     
     public Optional<Loan> getLoanById(String loanId) {
         return loanRepository.findById(loanId);
     }
+    
+    public record BulkDecision(String loanId, LoanDecision decision, String comments, Long version) {}
+    
+    private record Approval(Loan loan, Long version, String comments) {}
+    
+    private record Outcome(Loan disbursed, RuntimeException failure) {}
+    
+    private record Disbursed(List<Outcome> outcomes, List<Transaction> entries) {}
 }
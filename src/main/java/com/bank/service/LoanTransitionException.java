@@ -0,0 +1,8 @@
+package com.bank.service;
+
+/** A loan was not in the expected state or version when a transition was attempted. */
+public class LoanTransitionException extends RuntimeException {
+    public LoanTransitionException(String message) {
+        super(message);
+    }
+}
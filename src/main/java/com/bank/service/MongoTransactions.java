@@ -0,0 +1,51 @@
+package com.bank.service;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.ReadConcern;
+import com.mongodb.TransactionOptions;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.ClientSession;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Function;
+
+/**
+ * Multi-document transactions (snapshot reads, majority writes) where the deployment has
+ * them: a replica set or sharded cluster. Callers check {@link #isSupported()} and take a
+ * non-transactional path on a standalone server. The work may be run again by the driver on
+ * a transient error, so it must only touch Mongo through the template it is given.
+ */
+@Component
+public class MongoTransactions {
+
+    private final MongoTemplate mongoTemplate;
+    private volatile Boolean supported;
+
+    public MongoTransactions(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public boolean isSupported() {
+        Boolean known = supported;
+        if (known == null) {
+            Document hello = mongoTemplate.getDb().runCommand(new Document("hello", 1));
+            known = hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg"));
+            supported = known;
+        }
+        return known;
+    }
+
+    public <T> T execute(Function<MongoTemplate, T> work) {
+        TransactionOptions options = TransactionOptions.builder()
+                .readConcern(ReadConcern.SNAPSHOT)
+                .writeConcern(WriteConcern.MAJORITY)
+                .build();
+        try (ClientSession session = mongoTemplate.getMongoDatabaseFactory()
+                .getSession(ClientSessionOptions.builder().causallyConsistent(true).build())) {
+            MongoTemplate ops = mongoTemplate.withSession(session);
+            return session.withTransaction(() -> work.apply(ops), options);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.bank.service;
+
+import com.bank.entity.Transaction;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes a user's history straight from a Mongo cursor to an output stream, one row at a time.
+ * Rows are pulled from the cursor only as fast as the client drains the response, so heap use
+ * is bounded by the cursor batch size regardless of how long the history is.
+ */
+@Service
+public class TransactionExportService {
+
+    private static final int CURSOR_BATCH_SIZE = 1000;
+    private static final String CSV_HEADER = "id,timestamp,type,amount,balanceAfter,description\n";
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    public TransactionExportService(MongoTemplate mongoTemplate, ObjectMapper objectMapper) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public void writeNdjson(String userId, Instant from, Instant to, OutputStream out) throws IOException {
+        try (Stream<Transaction> rows = stream(userId, from, to);
+             SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+            Iterator<Transaction> it = rows.iterator();
+            if (!it.hasNext()) return;
+            while (it.hasNext()) writer.write(it.next());
+            writer.flush();
+            out.write('\n');
+        }
+    }
+
+    public void writeCsv(String userId, Instant from, Instant to, OutputStream out) throws IOException {
+        try (Stream<Transaction> rows = stream(userId, from, to)) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write(CSV_HEADER);
+            Iterator<Transaction> it = rows.iterator();
+            while (it.hasNext()) {
+                Transaction tx = it.next();
+                writer.write(tx.getId());
+                writer.write(',');
+                writer.write(String.valueOf(tx.getTimestamp()));
+                writer.write(',');
+                writer.write(tx.getType() != null ? tx.getType().name() : "");
+                writer.write(',');
+                writer.write(tx.getAmount() != null ? tx.getAmount().toString() : "");
+                writer.write(',');
+                writer.write(tx.getBalanceAfter() != null ? tx.getBalanceAfter().toString() : "");
+                writer.write(',');
+                writeCsvField(writer, tx.getDescription());
+                writer.write('\n');
+            }
+            writer.flush();
+        }
+    }
+
+    private Stream<Transaction> stream(String userId, Instant from, Instant to) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (from != null || to != null) {
+            Criteria range = criteria.and("timestamp");
+            if (from != null) range.gte(from);
+            if (to != null) range.lt(to);
+        }
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Order.asc("timestamp"), Sort.Order.asc("_id")))
+                .cursorBatchSize(CURSOR_BATCH_SIZE);
+        return mongoTemplate.stream(query, Transaction.class);
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) return;
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
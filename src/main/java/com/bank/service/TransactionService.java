@@ -1,13 +1,159 @@
 package com.bank.service;
 
+import com.bank.dto.StatementDTO;
+import com.bank.dto.TransactionPage;
+import com.bank.entity.Transaction;
+import com.bank.event.AccountEventBus;
+import com.bank.journal.TransactionJournal;
+import com.bank.money.Money;
 import com.bank.repository.TransactionRepository;
+import com.bank.transaction.HistoryCursor;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.List;
+
 @Service
 public class TransactionService {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
     private final TransactionRepository transactionRepository;
-    public TransactionService(TransactionRepository transactionRepository) { this.transactionRepository = transactionRepository; }
+    private final MongoTemplate mongoTemplate;
+    private final TransactionJournal journal;
+    private final AccountEventBus events;
+
+    public TransactionService(TransactionRepository transactionRepository, MongoTemplate mongoTemplate,
+                              ObjectProvider<TransactionJournal> journal, AccountEventBus events) {
+        this.transactionRepository = transactionRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.journal = journal.getIfAvailable();
+        this.events = events;
+    }
+
     public long countAll() { return transactionRepository.count(); }
-}
 
+    /** Records a ledger row, through the local journal when it is enabled. */
+    public void record(Transaction tx) {
+        if (journal != null) {
+            journal.append(tx);
+        } else {
+            transactionRepository.save(tx);
+        }
+        events.publishLocal(List.of(tx));
+    }
+
+    public void recordAll(List<Transaction> txs) {
+        if (journal != null) {
+            journal.appendAll(txs);
+        } else {
+            mongoTemplate.insertAll(txs);
+        }
+        events.publishLocal(txs);
+    }
+
+    /**
+     * One page of the statement for [from, to), oldest first. The opening and closing balances
+     * are the balances at {@code from} and at {@code to} (see {@link #balanceAt}), each one
+     * index seek however long the history; the lines are a keyset range scan on the same
+     * index, {@code limit} rows at a time.
+     */
+    public StatementDTO statement(String userId, Instant from, Instant to, String cursor, Integer limit) {
+        if (!from.isBefore(to)) throw new IllegalArgumentException("Statement range is empty");
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        Criteria criteria = Criteria.where("userId").is(userId).and("timestamp").gte(from).lt(to);
+        if (cursor != null && !cursor.isBlank()) {
+            HistoryCursor after = HistoryCursor.decode(cursor);
+            criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(
+                    Criteria.where("timestamp").gt(after.timestamp()),
+                    Criteria.where("timestamp").is(after.timestamp()).and("_id").gt(after.id())));
+        }
+        Query range = Query.query(criteria)
+                .with(Sort.by(Sort.Order.asc("timestamp"), Sort.Order.asc("_id")))
+                .limit(pageSize + 1);
+        List<Transaction> lines = mongoTemplate.find(range, Transaction.class);
+        String next = null;
+        if (lines.size() > pageSize) {
+            lines = lines.subList(0, pageSize);
+            Transaction last = lines.get(pageSize - 1);
+            next = new HistoryCursor(last.getTimestamp(), new ObjectId(last.getId())).encode();
+        }
+        return new StatementDTO(userId, from, to, balanceAt(userId, from), balanceAt(userId, to), lines, next);
+    }
 
+    /*
+     * The balance just before {@code at}: the balanceAfter of the last row before it. Rows
+     * written before balances were stamped have none, so the last stamped row is the anchor
+     * and the legacy rows after it are added by type (zero and every legacy row when none
+     * is stamped). Rows now always carry balanceAfter, so past the legacy era the first row
+     * the seek finds is the anchor.
+     */
+    private Money balanceAt(String userId, Instant at) {
+        Query stamped = Query.query(Criteria.where("userId").is(userId).and("timestamp").lt(at).and("balanceAfter").ne(null))
+                .with(Sort.by(Sort.Order.desc("timestamp"), Sort.Order.desc("_id")))
+                .limit(1);
+        stamped.fields().include("balanceAfter", "timestamp");
+        Transaction anchor = mongoTemplate.findOne(stamped, Transaction.class);
+
+        Criteria legacy = Criteria.where("userId").is(userId).and("timestamp").lt(at).and("balanceAfter").is(null);
+        if (anchor != null) {
+            legacy = new Criteria().andOperator(legacy, new Criteria().orOperator(
+                    Criteria.where("timestamp").gt(anchor.getTimestamp()),
+                    Criteria.where("timestamp").is(anchor.getTimestamp()).and("_id").gt(new ObjectId(anchor.getId()))));
+        }
+        Query unstamped = Query.query(legacy);
+        unstamped.fields().include("amount", "type", "description");
+        Money balance = anchor != null ? anchor.getBalanceAfter() : Money.ZERO;
+        for (Transaction row : mongoTemplate.find(unstamped, Transaction.class)) balance = balance.plus(signed(row));
+        return balance;
+    }
+
+    // Transfers are stored once per side with a positive amount; the description tells them apart
+    private static Money signed(Transaction row) {
+        if (row.getAmount() == null || row.getType() == null) return Money.ZERO;
+        boolean debit = switch (row.getType()) {
+            case WITHDRAW, LOAN_REPAYMENT -> true;
+            case TRANSFER -> row.getDescription() == null || !row.getDescription().startsWith("Transfer from");
+            case DEPOSIT, LOAN_DISBURSEMENT -> false;
+        };
+        return debit ? row.getAmount().negate() : row.getAmount();
+    }
+
+    /**
+     * One page of a user's history, newest first. Seeks past the cursor on the
+     * (userId, timestamp, _id) index, so cost depends on the page size only.
+     */
+    public TransactionPage history(String userId, String cursor, Integer limit, Instant from, Instant to) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (from != null || to != null) {
+            Criteria range = criteria.and("timestamp");
+            if (from != null) range.gte(from);
+            if (to != null) range.lt(to);
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            HistoryCursor after = HistoryCursor.decode(cursor);
+            criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(
+                    Criteria.where("timestamp").lt(after.timestamp()),
+                    Criteria.where("timestamp").is(after.timestamp()).and("_id").lt(after.id())));
+        }
+
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Order.desc("timestamp"), Sort.Order.desc("_id")))
+                .limit(pageSize + 1);
+        List<Transaction> rows = mongoTemplate.find(query, Transaction.class);
+        if (rows.size() <= pageSize) return new TransactionPage(rows, null);
+
+        List<Transaction> page = rows.subList(0, pageSize);
+        Transaction last = page.get(pageSize - 1);
+        return new TransactionPage(page, new HistoryCursor(last.getTimestamp(), new ObjectId(last.getId())).encode());
+    }
+}
@@ -0,0 +1,178 @@
+package com.bank.service;
+
+import com.bank.dto.UserDTO;
+import com.bank.entity.Transaction;
+import com.bank.entity.User;
+import com.bank.event.AccountEventBus;
+import com.bank.money.Money;
+import com.bank.transaction.TransactionType;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Moves money between two users. On a replica set or sharded cluster the debit, the credit
+ * and both ledger rows commit in one multi-document transaction: one read to resolve both
+ * parties, one bulkWrite for the balances and one for the ledger. On a standalone server
+ * (no transactions) it falls back to a guarded debit followed by the credit and ledger.
+ * Transfers run in the sender's {@link AccountLanes} lane. Every phase is timed under
+ * {@code bank.transfer.phase}.
+ */
+@Service
+public class TransferService {
+
+    private final MongoTemplate mongoTemplate;
+    private final AccountLanes lanes;
+    private final UserService userService;
+    private final AccountEventBus events;
+    private final MongoTransactions transactions;
+    private final Timer resolveTimer;
+    private final Timer postTimer;
+    private final Timer ledgerTimer;
+    private final Timer totalTimer;
+
+    public TransferService(MongoTemplate mongoTemplate, AccountLanes lanes, UserService userService,
+                           AccountEventBus events, MongoTransactions transactions, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.lanes = lanes;
+        this.userService = userService;
+        this.events = events;
+        this.transactions = transactions;
+        this.resolveTimer = phaseTimer(meterRegistry, "resolve");
+        this.postTimer = phaseTimer(meterRegistry, "post");
+        this.ledgerTimer = phaseTimer(meterRegistry, "ledger");
+        this.totalTimer = phaseTimer(meterRegistry, "total");
+    }
+
+    private static Timer phaseTimer(MeterRegistry registry, String phase) {
+        return Timer.builder("bank.transfer.phase")
+                .tag("phase", phase)
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+    }
+
+    public TransferResult transfer(String fromId, String toUserId, Money amount) {
+        return execute(fromId, Criteria.where("_id").is(toUserId), u -> toUserId.equals(u.getId()), amount);
+    }
+
+    // The email is mapped to an id through the user near-cache; the balances are still read in resolve
+    public TransferResult transferByEmail(String fromId, String toEmail, Money amount) {
+        String toUserId = userService.findProfileByEmail(toEmail)
+                .map(UserDTO::id)
+                .orElseThrow(() -> new NoSuchElementException("Recipient not found"));
+        return transfer(fromId, toUserId, amount);
+    }
+
+    private TransferResult execute(String fromId, Criteria recipient, Predicate<User> isRecipient, Money amount) {
+        if (amount == null || amount.signum() <= 0) throw new IllegalArgumentException("Amount must be positive");
+        // Runs in the sender's lane so it is ordered with every other debit of that account
+        TransferResult result = AccountLanes.await(lanes.execute(fromId, () -> totalTimer.record(() -> transactions.isSupported()
+                ? inTransaction(fromId, recipient, isRecipient, amount)
+                : sequential(fromId, recipient, isRecipient, amount))));
+        // Published only once committed, so subscribers never see a transfer that rolled back
+        events.publishLocal(result.ledger());
+        return result;
+    }
+
+    private TransferResult inTransaction(String fromId, Criteria recipient, Predicate<User> isRecipient, Money amount) {
+        return transactions.execute(ops -> {
+            Parties parties = resolveTimer.record(() -> resolve(ops, fromId, recipient, isRecipient));
+            if (parties.from().getBalance().isLessThan(amount)) throw new InsufficientFundsException();
+
+            BulkWriteResult posted = postTimer.record(() -> ops.bulkOps(BulkMode.ORDERED, User.class)
+                    .updateOne(Query.query(Criteria.where("_id").is(fromId).and("balance").gte(amount.minorUnits())), posting(amount.negate()))
+                    .updateOne(Query.query(Criteria.where("_id").is(parties.to().getId())), posting(amount))
+                    .execute());
+            // A concurrent debit slipped in between the read and the write; abort the whole transaction
+            if (posted.getMatchedCount() != 2) throw new InsufficientFundsException();
+
+            // Snapshot isolation makes read + delta the exact post-transfer balances
+            Money fromBalance = parties.from().getBalance().minus(amount);
+            Money toBalance = parties.to().getBalance().plus(amount);
+            List<Transaction> ledger = ledgerEntries(parties.from(), parties.to(), amount, fromBalance, toBalance);
+            timed(ledgerTimer, () -> ops.bulkOps(BulkMode.UNORDERED, Transaction.class)
+                    .insert(ledger)
+                    .execute());
+            return new TransferResult(parties.from(), parties.to(), fromBalance, toBalance, ledger);
+        });
+    }
+
+    private TransferResult sequential(String fromId, Criteria recipient, Predicate<User> isRecipient, Money amount) {
+        Parties parties = resolveTimer.record(() -> resolve(mongoTemplate, fromId, recipient, isRecipient));
+        FindAndModifyOptions returnNew = FindAndModifyOptions.options().returnNew(true);
+        User from = postTimer.record(() -> mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(fromId).and("balance").gte(amount.minorUnits())),
+                posting(amount.negate()), returnNew, User.class));
+        if (from == null) throw new InsufficientFundsException();
+        User to = postTimer.record(() -> mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(parties.to().getId())), posting(amount), returnNew, User.class));
+        if (to == null) {
+            // Recipient vanished after resolution; put the debit back before failing
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(fromId)),
+                    new Update().inc("balance", amount.minorUnits()).inc("totalTransactions", -1L), User.class);
+            throw new NoSuchElementException("Recipient not found");
+        }
+
+        List<Transaction> ledger = ledgerEntries(parties.from(), parties.to(), amount, from.getBalance(), to.getBalance());
+        timed(ledgerTimer, () -> mongoTemplate.insertAll(ledger));
+        return new TransferResult(parties.from(), parties.to(), from.getBalance(), to.getBalance(), ledger);
+    }
+
+    // Sender and recipient in a single query
+    private static Parties resolve(MongoTemplate ops, String fromId, Criteria recipient, Predicate<User> isRecipient) {
+        Query query = Query.query(new Criteria().orOperator(Criteria.where("_id").is(fromId), recipient));
+        query.fields().include("name", "email", "balance");
+        User from = null;
+        User to = null;
+        for (User user : ops.find(query, User.class)) {
+            if (fromId.equals(user.getId())) from = user;
+            if (isRecipient.test(user)) to = user;
+        }
+        if (from == null) throw new NoSuchElementException("Sender not found");
+        if (to == null) throw new NoSuchElementException("Recipient not found");
+        if (from == to) throw new IllegalArgumentException("Cannot transfer to self");
+        return new Parties(from, to);
+    }
+
+    private static List<Transaction> ledgerEntries(User from, User to, Money amount,
+                                                   Money fromBalance, Money toBalance) {
+        Transaction debit = new Transaction();
+        debit.setUserId(from.getId());
+        debit.setAmount(amount);
+        debit.setType(TransactionType.TRANSFER);
+        debit.setDescription("Transfer to " + to.getName() + " (" + to.getEmail() + ")");
+        debit.setBalanceAfter(fromBalance);
+
+        Transaction credit = new Transaction();
+        credit.setUserId(to.getId());
+        credit.setAmount(amount);
+        credit.setType(TransactionType.TRANSFER);
+        credit.setDescription("Transfer from " + from.getName() + " (" + from.getEmail() + ")");
+        credit.setBalanceAfter(toBalance);
+        return List.of(debit, credit);
+    }
+
+    private static Update posting(Money delta) {
+        return new Update().inc("balance", delta.minorUnits()).inc("totalTransactions", 1L);
+    }
+
+    private static void timed(Timer timer, Supplier<?> action) {
+        timer.record(action);
+    }
+
+    private record Parties(User from, User to) {}
+
+    public record TransferResult(User from, User to, Money fromBalance, Money toBalance, List<Transaction> ledger) {}
+}
@@ -0,0 +1,117 @@
+package com.bank.service;
+
+import com.bank.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind for non-critical "last seen" timestamps such as {@code lastLogin}. Touches are
+ * merged in memory (latest wins per user and field) and flushed every
+ * {@code bank.activity.flush-interval} as one unordered bulkWrite of {@code $max} updates, so
+ * they never rewrite the document or race a balance update and a late flush cannot move a
+ * timestamp backwards. The buffer is bounded: reaching the cap triggers an early flush and
+ * touches beyond it are dropped and counted. Pending touches are flushed on shutdown.
+ */
+@Service
+public class UserActivityRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(UserActivityRecorder.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final int maxPending;
+    private final Map<Touch, Instant> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "user-activity-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean earlyFlushQueued = new AtomicBoolean();
+    private final Timer flushTimer;
+    private final Counter dropped;
+
+    public UserActivityRecorder(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+                                @Value("${bank.activity.flush-interval:5s}") Duration flushInterval,
+                                @Value("${bank.activity.max-pending:100000}") int maxPending) {
+        this.mongoTemplate = mongoTemplate;
+        this.maxPending = maxPending;
+        this.flushTimer = Timer.builder("bank.activity.flush").register(meterRegistry);
+        this.dropped = Counter.builder("bank.activity.dropped").register(meterRegistry);
+        Gauge.builder("bank.activity.pending", pending, Map::size).register(meterRegistry);
+        long millis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordLogin(String userId, Instant at) {
+        touch(userId, "lastLogin", at);
+    }
+
+    public void touch(String userId, String field, Instant at) {
+        Touch key = new Touch(userId, field);
+        if (pending.size() >= maxPending && !pending.containsKey(key)) {
+            dropped.increment();
+            if (earlyFlushQueued.compareAndSet(false, true)) {
+                flusher.execute(() -> {
+                    earlyFlushQueued.set(false);
+                    flushQuietly();
+                });
+            }
+            return;
+        }
+        pending.merge(key, at, (a, b) -> a.isAfter(b) ? a : b);
+    }
+
+    /** Writes everything buffered so far; runs on the flusher thread and at shutdown. */
+    public synchronized void flush() {
+        if (pending.isEmpty()) return;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, User.class);
+        int count = 0;
+        for (Touch key : pending.keySet()) {
+            // remove() hands over the value atomically; a touch racing with it lands in the next flush
+            Instant at = pending.remove(key);
+            if (at == null) continue;
+            bulk.updateOne(Query.query(Criteria.where("_id").is(key.userId())), new Update().max(key.field(), at));
+            count++;
+        }
+        if (count > 0) flushTimer.record(bulk::execute);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Best effort by design: these fields are informational and the next touch rewrites them
+            log.warn("Failed to flush user activity: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flushQuietly();
+    }
+
+    private record Touch(String userId, String field) {}
+}
@@ -1,22 +1,230 @@
 package com.bank.service;
 
+import com.bank.dto.UserDTO;
 import com.bank.entity.User;
+import com.bank.money.Money;
 import com.bank.repository.UserRepository;
+import com.bank.user.Role;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * User lookups. Profiles (id, name, email, role) are served from a bounded near-cache with
+ * size and TTL eviction, plus an email to id index; every save or delete made through this
+ * service invalidates both. Balances are never cached: {@link #findBalance} and
+ * {@link #findById} always read Mongo, because lanes and transfers change balances with $inc
+ * behind any cached copy. The TTL bounds how long a change made on another node stays unseen.
+ */
 @Service
 public class UserService {
+
     private final UserRepository userRepository;
-    public UserService(UserRepository userRepository) { this.userRepository = userRepository; }
+    private final MongoTemplate mongoTemplate;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<String, Cached> byId = new ConcurrentHashMap<>();
+    private final Map<String, String> idByEmail = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Cached> insertionOrder = new ConcurrentLinkedQueue<>();
+    // Bumped on every invalidation; a load that raced with one is not cached
+    private final AtomicLong generation = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    public UserService(UserRepository userRepository, MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+                       @Value("${bank.users.cache.max-entries:10000}") int maxEntries,
+                       @Value("${bank.users.cache.ttl:5m}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.hits = Counter.builder("bank.users.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("bank.users.cache").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("bank.users.cache.size", byId, Map::size).register(meterRegistry);
+    }
+
     public List<User> findAll() { return userRepository.findAll(); }
+
+    /** Fresh read of the whole document, balance included; use on money paths. */
     public Optional<User> findById(String id) { return userRepository.findById(id); }
+
+    /** Fresh read by email, password hash included; use for login and uniqueness checks. */
     public Optional<User> findByEmail(String email) { return userRepository.findByEmail(email); }
-    public User save(User user) { return userRepository.save(user); }
+
     public boolean existsById(String id) { return userRepository.existsById(id); }
-    public void deleteById(String id) { userRepository.deleteById(id); }
-}
 
+    /** Current balance only, read from Mongo on every call. */
+    public Optional<Money> findBalance(String id) {
+        Query query = Query.query(Criteria.where("_id").is(id));
+        query.fields().include("balance");
+        return Optional.ofNullable(mongoTemplate.findOne(query, User.class)).map(User::getBalance);
+    }
+
+    public Optional<UserDTO> findProfile(String id) {
+        Cached cached = byId.get(id);
+        if (cached != null && !cached.isExpired(ttlNanos)) {
+            hits.increment();
+            return Optional.of(cached.profile());
+        }
+        misses.increment();
+        long seen = generation.get();
+        Optional<UserDTO> loaded = userRepository.findById(id).map(UserService::toProfile);
+        loaded.ifPresent(profile -> cache(profile, seen));
+        return loaded;
+    }
+
+    /**
+     * Profiles for many users at once: cached ones are served from memory and the rest come
+     * back from a single $in query. Ids that do not exist are absent from the result.
+     */
+    public Map<String, UserDTO> findProfiles(Collection<String> ids) {
+        Map<String, UserDTO> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            if (id == null || found.containsKey(id)) continue;
+            Cached cached = byId.get(id);
+            if (cached != null && !cached.isExpired(ttlNanos)) {
+                hits.increment();
+                found.put(id, cached.profile());
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) return found;
+        misses.increment(missing.size());
+        long seen = generation.get();
+        Query query = Query.query(Criteria.where("_id").in(missing));
+        query.fields().include("name", "email", "role");
+        for (User user : mongoTemplate.find(query, User.class)) {
+            UserDTO profile = toProfile(user);
+            found.put(profile.id(), profile);
+            cache(profile, seen);
+        }
+        return found;
+    }
+
+    public Optional<UserDTO> findProfileByEmail(String email) {
+        String id = idByEmail.get(email);
+        if (id != null) {
+            Cached cached = byId.get(id);
+            if (cached != null && !cached.isExpired(ttlNanos) && email.equals(cached.profile().email())) {
+                hits.increment();
+                return Optional.of(cached.profile());
+            }
+        }
+        misses.increment();
+        long seen = generation.get();
+        Optional<UserDTO> loaded = userRepository.findByEmail(email).map(UserService::toProfile);
+        loaded.ifPresent(profile -> cache(profile, seen));
+        return loaded;
+    }
 
+    /** Swaps the stored hash only if it is still {@code oldHash}, leaving the rest of the document alone. */
+    public void updatePasswordHash(String id, String oldHash, String newHash) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(id).and("passwordHash").is(oldHash)),
+                Update.update("passwordHash", newHash), User.class);
+    }
+
+    /**
+     * Sets name and/or role with one $set, leaving balance, counters and login stamps to the
+     * paths that own them; empty when the user does not exist.
+     */
+    public Optional<User> updateProfile(String id, String name, Role role) {
+        Update update = new Update();
+        if (name != null) update.set("name", name);
+        if (role != null) update.set("role", role);
+        if (update.getUpdateObject().isEmpty()) return findById(id);
+        invalidate(id, null);
+        User updated = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(id)), update,
+                FindAndModifyOptions.options().returnNew(true), User.class);
+        invalidate(id, null);
+        return Optional.ofNullable(updated);
+    }
+
+    public User save(User user) {
+        invalidate(user.getId(), user.getEmail());
+        User saved = userRepository.save(user);
+        invalidate(saved.getId(), saved.getEmail());
+        return saved;
+    }
+
+    public void deleteById(String id) {
+        invalidate(id, null);
+        userRepository.deleteById(id);
+        invalidate(id, null);
+    }
+
+    private void invalidate(String id, String email) {
+        generation.incrementAndGet();
+        if (id != null) {
+            Cached removed = byId.remove(id);
+            if (removed != null) idByEmail.remove(removed.profile().email(), id);
+        }
+        if (email != null) idByEmail.remove(email);
+    }
+
+    private void cache(UserDTO profile, long seen) {
+        if (generation.get() != seen) return;
+        Cached cached = new Cached(profile, System.nanoTime());
+        byId.put(profile.id(), cached);
+        idByEmail.put(profile.email(), profile.id());
+        // A save that slipped in after the check above must not leave this copy behind
+        if (generation.get() != seen) {
+            drop(cached);
+            return;
+        }
+        insertionOrder.add(cached);
+        evict();
+    }
+
+    // Oldest entries go first once over capacity; expired ones are dropped from the head.
+    // The queue holds the cached copies themselves, so a superseded copy only removes itself.
+    private void evict() {
+        while (byId.size() > maxEntries) {
+            Cached oldest = insertionOrder.poll();
+            if (oldest == null) return;
+            drop(oldest);
+        }
+        Cached head = insertionOrder.peek();
+        while (head != null && head.isExpired(ttlNanos)) {
+            drop(head);
+            insertionOrder.remove(head);
+            head = insertionOrder.peek();
+        }
+    }
+
+    private void drop(Cached cached) {
+        if (byId.remove(cached.profile().id(), cached)) {
+            idByEmail.remove(cached.profile().email(), cached.profile().id());
+        }
+    }
+
+    private static UserDTO toProfile(User user) {
+        return new UserDTO(user.getId(), user.getName(), user.getEmail(),
+                user.getRole() != null ? user.getRole().name() : null);
+    }
+
+    private record Cached(UserDTO profile, long loadedNanos) {
+        boolean isExpired(long ttlNanos) {
+            return System.nanoTime() - loadedNanos > ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.bank.transaction;
+
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position in a user's history: the (timestamp, _id) of the last row
+ * returned. The next page starts strictly after it in the listing's order: (timestamp desc,
+ * _id desc) for history, ascending for statements.
+ */
+public record HistoryCursor(Instant timestamp, ObjectId id) {
+
+    public String encode() {
+        String raw = timestamp.toEpochMilli() + ":" + id.toHexString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static HistoryCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int sep = raw.indexOf(':');
+            return new HistoryCursor(Instant.ofEpochMilli(Long.parseLong(raw.substring(0, sep))), new ObjectId(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -3,7 +3,9 @@ package com.bank.transaction;
 public enum TransactionType {
     DEPOSIT,
     WITHDRAW,
-    TRANSFER
+    TRANSFER,
+    LOAN_DISBURSEMENT,
+    LOAN_REPAYMENT
 }
 
 
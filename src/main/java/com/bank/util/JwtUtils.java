@@ -1,27 +1,183 @@
 package com.bank.util;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Stateless HS256 JWTs. Any node holding the keys can verify a token without shared state.
+ * Keys come from {@code bank.tokens.keys} as {@code kid:base64-secret} pairs; the first one
+ * signs and every listed one verifies (by the {@code kid} header), so a key is rotated by
+ * putting a new one first and dropping the old one once its tokens have expired.
+ * Verified tokens are kept in a small bounded cache so repeat requests skip the MAC; the cache
+ * is keyed by the token's SHA-256, so a heap dump of it yields no usable bearer tokens.
+ */
 @Component
 public class JwtUtils {
 
+    private static final Logger log = LoggerFactory.getLogger(JwtUtils.class);
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64_DECODER = Base64.getUrlDecoder();
+
     public static record TokenRecord(String userId, String role) {}
 
+    private final ObjectMapper objectMapper;
+    private final Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+    private final String signingKid;
+    private final long ttlSeconds;
+    private final int maxCached;
+    private final Map<String, Verified> verified = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Mac> mac = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    public JwtUtils(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                    @Value("${bank.tokens.keys:}") String configuredKeys,
+                    @Value("${bank.tokens.ttl:8h}") Duration ttl,
+                    @Value("${bank.tokens.cache.max-entries:50000}") int maxCached) {
+        this.objectMapper = objectMapper;
+        this.ttlSeconds = ttl.toSeconds();
+        this.maxCached = maxCached;
+        for (String pair : configuredKeys.split(",")) {
+            if (pair.isBlank()) continue;
+            String[] parts = pair.trim().split(":", 2);
+            if (parts.length != 2) throw new IllegalArgumentException("bank.tokens.keys entries must be kid:base64-secret");
+            keys.put(parts[0], new SecretKeySpec(Base64.getDecoder().decode(parts[1]), ALGORITHM));
+        }
+        if (keys.isEmpty()) {
+            // Fine for a single node in development; tokens do not survive a restart
+            log.warn("bank.tokens.keys is not set; signing with a random key that only this process knows");
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            keys.put("local", new SecretKeySpec(secret, ALGORITHM));
+        }
+        this.signingKid = keys.keySet().iterator().next();
+        this.cacheHits = Counter.builder("bank.tokens.cache").tag("result", "hit").register(meterRegistry);
+        this.cacheMisses = Counter.builder("bank.tokens.cache").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("bank.tokens.cache.size", verified, Map::size).register(meterRegistry);
+    }
+
     public String issueToken(String userId, String role) {
-        // NOTE: MVP placeholder; not a real JWT
-        return userId + ":" + role;
+        long now = System.currentTimeMillis() / 1000;
+        Map<String, Object> header = Map.of("alg", "HS256", "typ", "JWT", "kid", signingKid);
+        Map<String, Object> claims = Map.of("sub", userId, "role", role, "iat", now, "exp", now + ttlSeconds);
+        try {
+            String signingInput = B64.encodeToString(objectMapper.writeValueAsBytes(header)) + "."
+                    + B64.encodeToString(objectMapper.writeValueAsBytes(claims));
+            return signingInput + "." + B64.encodeToString(sign(keys.get(signingKid), signingInput));
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot issue token", e);
+        }
     }
 
+    /** Returns the token's subject and role, or null if it is malformed, forged or expired. */
     public TokenRecord validate(String token) {
-        if (token == null || !token.contains(":")) return null;
+        if (token == null) return null;
+        long now = System.currentTimeMillis() / 1000;
+        String cacheKey = cacheKey(token);
+        Verified cached = verified.get(cacheKey);
+        if (cached != null) {
+            if (cached.expiresAt() > now) {
+                cacheHits.increment();
+                return cached.record();
+            }
+            verified.remove(cacheKey, cached);
+            return null;
+        }
+        cacheMisses.increment();
+        Verified result = verify(token, now);
+        if (result == null) return null;
+        remember(cacheKey, result);
+        return result.record();
+    }
+
+    private Verified verify(String token, long now) {
+        int firstDot = token.indexOf('.');
+        int lastDot = token.lastIndexOf('.');
+        if (firstDot <= 0 || lastDot <= firstDot) return null;
         try {
-            String[] parts = token.split(":", 2);
-            String uid = parts[0];
-            return new TokenRecord(uid, parts[1]);
+            JsonNode header = objectMapper.readTree(B64_DECODER.decode(token.substring(0, firstDot)));
+            if (!"HS256".equals(header.path("alg").asText())) return null;
+            SecretKeySpec key = keys.get(header.path("kid").asText(signingKid));
+            if (key == null) return null;
+
+            String signingInput = token.substring(0, lastDot);
+            byte[] signature = B64_DECODER.decode(token.substring(lastDot + 1));
+            if (!MessageDigest.isEqual(sign(key, signingInput), signature)) return null;
+
+            JsonNode claims = objectMapper.readTree(B64_DECODER.decode(token.substring(firstDot + 1, lastDot)));
+            long expiresAt = claims.path("exp").asLong(0);
+            String userId = claims.path("sub").asText(null);
+            if (expiresAt <= now || userId == null) return null;
+            return new Verified(new TokenRecord(userId, claims.path("role").asText(null)), expiresAt);
         } catch (Exception e) {
             return null;
         }
     }
-}
 
+    private byte[] sign(SecretKeySpec key, String signingInput) throws GeneralSecurityException {
+        Mac hmac = mac.get();
+        hmac.init(key);
+        return hmac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String cacheKey(String token) {
+        return B64.encodeToString(sha256.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
 
+    // Oldest verified tokens go first once over capacity; expired or dropped ones leave from the head
+    private void remember(String cacheKey, Verified result) {
+        if (verified.putIfAbsent(cacheKey, result) != null) return;
+        insertionOrder.add(cacheKey);
+        while (verified.size() > maxCached) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) return;
+            verified.remove(oldest);
+        }
+        long now = System.currentTimeMillis() / 1000;
+        String head = insertionOrder.peek();
+        while (head != null) {
+            Verified entry = verified.get(head);
+            if (entry != null && entry.expiresAt() > now) return;
+            if (entry != null) verified.remove(head, entry);
+            insertionOrder.remove(head);
+            head = insertionOrder.peek();
+        }
+    }
+
+    private record Verified(TokenRecord record, long expiresAt) {}
+}
@@ -0,0 +1,173 @@
+package com.bank.journal;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransactionJournalTest {
+
+    private static final int SEGMENT_BYTES = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> transactions = mock(MongoCollection.class);
+    // Every document the journal tried to insert, per insertMany call
+    private final List<List<String>> shipped = new CopyOnWriteArrayList<>();
+    private TransactionJournal journal;
+
+    @AfterEach
+    void shutdown() throws Exception {
+        if (journal != null) journal.shutdown();
+    }
+
+    @Test
+    void segmentRecoveryStopsAtATornTail() throws IOException {
+        int[] ends = writeSegment(0, "tx-1", "tx-2", "tx-3");
+        tear(0, ends[1]);
+
+        List<String> recovered = new ArrayList<>();
+        try (JournalSegment segment = JournalSegment.open(dir, 0, SEGMENT_BYTES)) {
+            int position = segment.recover(0, (payload, end) -> recovered.add(id(payload)));
+
+            assertThat(position).isEqualTo(ends[1]);
+            assertThat(segment.position()).isEqualTo(ends[1]);
+        }
+        assertThat(recovered).containsExactly("tx-1", "tx-2");
+    }
+
+    @Test
+    void rowsPastTheCheckpointAreShippedAgainAfterACrash() throws Exception {
+        // A crashed node left four journaled rows, of which the first was shipped and checkpointed
+        int[] ends = writeSegment(0, "tx-1", "tx-2", "tx-3", "tx-4");
+        tear(0, ends[2]);
+        writeCheckpoint(0, ends[0]);
+        // tx-2 reached Mongo before the crash but not the checkpoint
+        when(transactions.insertMany(any(), any(InsertManyOptions.class))).thenAnswer(invocation -> {
+            List<Document> documents = invocation.getArgument(0);
+            shipped.add(documents.stream().map(d -> d.getString("_id")).toList());
+            for (int i = 0; i < documents.size(); i++) {
+                if (documents.get(i).get("_id").equals("tx-2")) throw bulkError(11000, i);
+            }
+            return null;
+        });
+
+        journal = start(10);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> readCheckpoint()[1] == ends[2]);
+        assertThat(shipped).containsExactly(List.of("tx-2", "tx-3"));
+        assertThat(readCheckpoint()[0]).isZero();
+    }
+
+    @Test
+    void rowsMongoKeepsRejectingAreDeadLetteredAndTheRestMoveOn() throws Exception {
+        int[] ends = writeSegment(0, "tx-1", "poison", "tx-3");
+        when(transactions.insertMany(any(), any(InsertManyOptions.class))).thenAnswer(invocation -> {
+            List<Document> documents = invocation.getArgument(0);
+            shipped.add(documents.stream().map(d -> d.getString("_id")).toList());
+            for (int i = 0; i < documents.size(); i++) {
+                if (documents.get(i).get("_id").equals("poison")) throw bulkError(121, i);
+            }
+            return null;
+        });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        journal = start(2, registry);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> readCheckpoint()[1] == ends[2]);
+        // The whole batch once, then the rejected row alone until it has been refused twice
+        assertThat(shipped).containsExactly(List.of("tx-1", "poison", "tx-3"), List.of("poison"));
+        assertThat(registry.get("bank.journal.dead-lettered").counter().count()).isEqualTo(1);
+        byte[] deadLetter = Files.readAllBytes(dir.resolve("dead-letter.bson"));
+        assertThat(id(deadLetter)).isEqualTo("poison");
+    }
+
+    private TransactionJournal start(int maxShipAttempts) throws IOException {
+        return start(maxShipAttempts, new SimpleMeterRegistry());
+    }
+
+    private TransactionJournal start(int maxShipAttempts, SimpleMeterRegistry registry) throws IOException {
+        when(mongoTemplate.getCollection("transactions")).thenReturn(transactions);
+        return new TransactionJournal(mongoTemplate, registry, dir.toString(), SEGMENT_BYTES, 100, maxShipAttempts);
+    }
+
+    // Journals one BSON row per id, as appendAll would, and returns the offset just past each
+    private int[] writeSegment(long id, String... rowIds) throws IOException {
+        int[] ends = new int[rowIds.length];
+        try (JournalSegment segment = JournalSegment.open(dir, id, SEGMENT_BYTES)) {
+            for (int i = 0; i < rowIds.length; i++) {
+                ends[i] = segment.append(bytes(new Document("_id", rowIds[i]).append("amount", 100L)));
+            }
+            segment.force();
+        }
+        return ends;
+    }
+
+    // Corrupts the checksum of the record starting at offset, as a write cut short by a crash would
+    private void tear(long id, int offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(JournalSegment.pathFor(dir, id), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0xBAD).flip(), offset + 4);
+        }
+    }
+
+    private void writeCheckpoint(long segmentId, int offset) throws IOException {
+        Files.write(dir.resolve("checkpoint"), ByteBuffer.allocate(16).putLong(segmentId).putLong(offset).array());
+    }
+
+    private long[] readCheckpoint() throws IOException {
+        Path file = dir.resolve("checkpoint");
+        if (!Files.exists(file)) return new long[] {-1, -1};
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        return new long[] {buffer.getLong(), buffer.getLong()};
+    }
+
+    private static MongoBulkWriteException bulkError(int code, int index) {
+        return new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                List.of(new BulkWriteError(code, "rejected", new BsonDocument(), index)),
+                null, new ServerAddress(), Set.of());
+    }
+
+    private static byte[] bytes(Document document) {
+        ByteBuffer buffer = new RawBsonDocument(document, MongoClientSettings.getDefaultCodecRegistry().get(Document.class))
+                .getByteBuffer().asNIO();
+        byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+        return payload;
+    }
+
+    private static String id(byte[] payload) {
+        return new RawBsonDocument(payload).getString("_id").getValue();
+    }
+}
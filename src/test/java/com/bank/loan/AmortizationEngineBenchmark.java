@@ -0,0 +1,63 @@
+package com.bank.loan;
+
+import com.bank.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule generation, computed every time (a cache of zero entries) and served from the
+ * cache. Not part of the test run; start {@link #main} on the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AmortizationEngineBenchmark {
+
+    @Param({"12", "60", "360"})
+    int tenureMonths;
+
+    private final Money principal = Money.parse("250000.00");
+    private final BigDecimal rate = BigDecimal.valueOf(8.5);
+    private AmortizationEngine uncached;
+    private AmortizationEngine cached;
+
+    @Setup
+    public void setUp() {
+        uncached = new AmortizationEngine(new SimpleMeterRegistry(), 0);
+        cached = new AmortizationEngine(new SimpleMeterRegistry(), 10_000);
+        cached.schedule(principal, tenureMonths, rate);
+    }
+
+    @Benchmark
+    public LoanSchedule compute() {
+        return uncached.schedule(principal, tenureMonths, rate);
+    }
+
+    @Benchmark
+    public LoanSchedule cacheHit() {
+        return cached.schedule(principal, tenureMonths, rate);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AmortizationEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,86 @@
+package com.bank.loan;
+
+import com.bank.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AmortizationEngineTest {
+
+    private final AmortizationEngine engine = new AmortizationEngine(new SimpleMeterRegistry(), 100);
+
+    @ParameterizedTest
+    @CsvSource({
+            "100000.00, 12, 12.0",
+            "250000.00, 360, 8.5",
+            "999.99, 7, 18.25",
+            "1000.00, 3, 0",
+            "0.01, 1, 10.0",
+            "5000000.00, 600, 24.0"
+    })
+    void installmentsAddUpToTheTotals(String principal, int tenure, BigDecimal rate) {
+        LoanSchedule schedule = engine.schedule(Money.parse(principal), tenure, rate);
+        List<LoanSchedule.Installment> installments = schedule.installments();
+
+        assertThat(installments).hasSize(tenure);
+        assertThat(sum(installments, LoanSchedule.Installment::principal)).isEqualTo(schedule.principal());
+        assertThat(sum(installments, LoanSchedule.Installment::interest)).isEqualTo(schedule.totalInterest());
+        assertThat(sum(installments, LoanSchedule.Installment::payment)).isEqualTo(schedule.totalPayment());
+        assertThat(schedule.principal().plus(schedule.totalInterest())).isEqualTo(schedule.totalPayment());
+        assertThat(installments.get(tenure - 1).balance()).isEqualTo(Money.ZERO);
+        // Every installment but the last pays the EMI; the last absorbs the rounding
+        for (LoanSchedule.Installment installment : installments.subList(0, tenure - 1)) {
+            assertThat(installment.payment()).isEqualTo(schedule.emi());
+        }
+    }
+
+    @Test
+    void emiMatchesTheClosedForm() {
+        LoanSchedule schedule = engine.schedule(Money.parse("100000.00"), 12, BigDecimal.valueOf(12));
+
+        assertThat(schedule.emi()).isEqualTo(Money.parse("8884.88"));
+        assertThat(schedule.annualRate()).isEqualByComparingTo("12.00");
+    }
+
+    @Test
+    void zeroRateSplitsThePrincipalWithTheRemainderLast() {
+        LoanSchedule schedule = engine.schedule(Money.parse("1000.00"), 3, BigDecimal.ZERO);
+
+        assertThat(schedule.installments()).extracting(LoanSchedule.Installment::payment)
+                .containsExactly(Money.parse("333.34"), Money.parse("333.34"), Money.parse("333.32"));
+        assertThat(schedule.totalInterest()).isEqualTo(Money.ZERO);
+    }
+
+    @Test
+    void repeatedSchedulesComeFromTheCache() {
+        LoanSchedule first = engine.schedule(Money.parse("5000.00"), 24, BigDecimal.valueOf(9.5));
+
+        assertThat(engine.schedule(Money.parse("5000.00"), 24, new BigDecimal("9.50"))).isSameAs(first);
+    }
+
+    @Test
+    void rejectsWhatCannotBeScheduled() {
+        assertThatThrownBy(() -> engine.schedule(Money.ZERO, 12, BigDecimal.TEN)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> engine.schedule(Money.parse("100"), 0, BigDecimal.TEN)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> engine.schedule(Money.parse("100"), AmortizationEngine.MAX_TENURE_MONTHS + 1, BigDecimal.TEN))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> engine.schedule(Money.parse("100"), 12, BigDecimal.valueOf(-1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> engine.schedule(Money.ofMinor(Long.MAX_VALUE / 2), 12, BigDecimal.TEN))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Money sum(List<LoanSchedule.Installment> installments, Function<LoanSchedule.Installment, Money> part) {
+        Money total = Money.ZERO;
+        for (LoanSchedule.Installment installment : installments) total = total.plus(part.apply(installment));
+        return total;
+    }
+}
@@ -0,0 +1,99 @@
+package com.bank.loan;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.UpdateOneModel;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InterestAccrualJobTest {
+
+    private static final Instant START = Instant.parse("2025-01-01T00:00:00Z");
+
+    @Test
+    void carryKeepsTheFractionOfAMinorUnit() {
+        // 1,000.00 at 10%: 100000 * 1000 bps * 1 day = 100,000,000 over 3,650,000 = 27 rest 1,450,000
+        Document loan = loan(100_000, 10.0, START, null);
+
+        BsonDocument update = update(InterestAccrualJob.accrue(loan, START.plus(1, ChronoUnit.DAYS)));
+
+        assertThat(update.getDocument("$inc").getInt64("accruedInterest").getValue()).isEqualTo(27);
+        assertThat(update.getDocument("$set").getInt64("accrualCarry").getValue()).isEqualTo(1_450_000);
+    }
+
+    @Test
+    void dailyAccrualOverAYearLosesNothingToRounding() {
+        Document loan = loan(100_000, 10.0, START, null);
+        long interest = 0;
+        Instant through = START;
+        for (int day = 0; day < 365; day++) {
+            through = through.plus(1, ChronoUnit.DAYS);
+            BsonDocument update = update(InterestAccrualJob.accrue(loan, through));
+            interest += update.getDocument("$inc").getInt64("accruedInterest").getValue();
+            loan.put("accrualCarry", update.getDocument("$set").getInt64("accrualCarry").getValue());
+            loan.put("accruedThrough", Date.from(through));
+        }
+
+        // Exactly 10% of 1,000.00, the same as accruing the whole year in one step
+        assertThat(interest).isEqualTo(10_000);
+        assertThat(loan.getLong("accrualCarry")).isZero();
+        BsonDocument once = update(InterestAccrualJob.accrue(loan(100_000, 10.0, START, null), through));
+        assertThat(once.getDocument("$inc").getInt64("accruedInterest").getValue()).isEqualTo(10_000);
+    }
+
+    @Test
+    void missedNightsAreCaughtUpInOneWrite() {
+        Document loan = loan(100_000, 10.0, START, 1_450_000L);
+
+        BsonDocument update = update(InterestAccrualJob.accrue(loan, START.plus(3, ChronoUnit.DAYS)));
+
+        // 3 * 100,000,000 + 1,450,000 = 301,450,000 = 82 * 3,650,000 + 2,150,000
+        assertThat(update.getDocument("$inc").getInt64("accruedInterest").getValue()).isEqualTo(82);
+        assertThat(update.getDocument("$set").getInt64("accrualCarry").getValue()).isEqualTo(2_150_000);
+    }
+
+    @Test
+    void writeIsConditionalOnTheAccruedThroughItWasComputedFrom() {
+        Document loan = loan(100_000, 10.0, START, null);
+
+        UpdateOneModel<Document> model = InterestAccrualJob.accrue(loan, START.plus(1, ChronoUnit.DAYS));
+
+        BsonDocument filter = model.getFilter().toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+        BsonDocument accruedThrough = filter.getArray("$and").get(1).asDocument();
+        assertThat(accruedThrough.getDateTime("accruedThrough").getValue()).isEqualTo(START.toEpochMilli());
+    }
+
+    @Test
+    void nothingToDoOnceAccruedThroughTheDay() {
+        assertThat(InterestAccrualJob.accrue(loan(100_000, 10.0, START, null), START)).isNull();
+    }
+
+    @Test
+    void loansWithoutInterestOnlyMoveTheirAccrualDate() {
+        BsonDocument update = update(InterestAccrualJob.accrue(loan(100_000, 0.0, START, null), START.plus(1, ChronoUnit.DAYS)));
+
+        assertThat(update.containsKey("$inc")).isFalse();
+        assertThat(update.getDocument("$set").containsKey("accruedThrough")).isTrue();
+    }
+
+    private static Document loan(long outstanding, double rate, Instant accruedThrough, Long carry) {
+        Document loan = new Document("_id", new ObjectId())
+                .append("outstandingPrincipal", outstanding)
+                .append("interestRate", rate)
+                .append("accruedThrough", Date.from(accruedThrough));
+        if (carry != null) loan.append("accrualCarry", carry);
+        return loan;
+    }
+
+    private static BsonDocument update(UpdateOneModel<Document> model) {
+        assertThat(model).isNotNull();
+        return model.getUpdate().toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+    }
+}
@@ -0,0 +1,28 @@
+package com.bank.loan;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoanStatusTest {
+
+    private static final Map<LoanStatus, Set<LoanStatus>> ALLOWED = Map.of(
+            LoanStatus.PENDING, EnumSet.of(LoanStatus.APPROVED, LoanStatus.REJECTED),
+            LoanStatus.APPROVED, EnumSet.of(LoanStatus.DISBURSED),
+            LoanStatus.DISBURSED, EnumSet.of(LoanStatus.COMPLETED),
+            LoanStatus.REJECTED, EnumSet.noneOf(LoanStatus.class),
+            LoanStatus.COMPLETED, EnumSet.noneOf(LoanStatus.class));
+
+    @ParameterizedTest
+    @EnumSource(LoanStatus.class)
+    void onlyTheLifecycleTransitionsAreAllowed(LoanStatus from) {
+        for (LoanStatus to : LoanStatus.values()) {
+            assertThat(from.canMoveTo(to)).as("%s -> %s", from, to).isEqualTo(ALLOWED.get(from).contains(to));
+        }
+    }
+}
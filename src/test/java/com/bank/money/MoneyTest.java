@@ -0,0 +1,74 @@
+package com.bank.money;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+    @Test
+    void arithmeticIsExactInMinorUnits() {
+        Money a = Money.parse("10.10");
+        Money b = Money.parse("0.20");
+
+        assertThat(a.plus(b)).isEqualTo(Money.ofMinor(1030));
+        assertThat(a.minus(b)).isEqualTo(Money.ofMinor(990));
+        assertThat(b.minus(a).negate()).isEqualTo(Money.ofMinor(990));
+        assertThat(b.minus(a).signum()).isEqualTo(-1);
+        assertThat(b.isLessThan(a)).isTrue();
+        assertThat(a.minus(a)).isSameAs(Money.ZERO);
+    }
+
+    @Test
+    void overflowIsAnErrorNotAWrap() {
+        Money max = Money.ofMinor(Long.MAX_VALUE);
+
+        assertThatThrownBy(() -> max.plus(Money.ofMinor(1))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MIN_VALUE).negate()).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void parsesUpToTwoDecimals() {
+        assertThat(Money.parse("12").minorUnits()).isEqualTo(1200);
+        assertThat(Money.parse(" 12.3 ").minorUnits()).isEqualTo(1230);
+        assertThat(Money.parse("12.30").minorUnits()).isEqualTo(1230);
+        assertThat(Money.parse("-0.05").minorUnits()).isEqualTo(-5);
+        // Trailing zeros beyond the scale lose nothing, so they are accepted
+        assertThat(Money.parse("1.500").minorUnits()).isEqualTo(150);
+        assertThat(Money.parse("7.25").toString()).isEqualTo("7.25");
+        assertThat(Money.ofMinor(700).toString()).isEqualTo("7.00");
+    }
+
+    @Test
+    void rejectsSubCentAmountsInsteadOfRounding() {
+        assertThatThrownBy(() -> Money.parse("1.005"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("at most 2 decimal places");
+        assertThatThrownBy(() -> Money.of(new BigDecimal("0.001"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Money.parse("1e30")).isInstanceOf(IllegalArgumentException.class);
+        assertThat(Money.of(null)).isNull();
+    }
+
+    @Test
+    void refusesToMixCurrencies() {
+        Money euros = new Money(100, Currency.getInstance("EUR"));
+
+        assertThatThrownBy(() -> Money.ofMinor(100).plus(euros)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Money.ofMinor(100).compareTo(euros)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void jsonKeepsTheDecimalNumberShape() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+
+        assertThat(mapper.writeValueAsString(Money.parse("1000"))).isEqualTo("1000.00");
+        assertThat(mapper.readValue("12.5", Money.class)).isEqualTo(Money.ofMinor(1250));
+        assertThat(mapper.readValue("\"12.50\"", Money.class)).isEqualTo(Money.ofMinor(1250));
+        assertThat(mapper.readValue("3", Money.class)).isEqualTo(Money.ofMinor(300));
+    }
+}
@@ -0,0 +1,73 @@
+package com.bank.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+    // One request a second, three back to back
+    private static final RateLimiter.Tier TIER = RateLimiter.Tier.of(60, 3);
+
+    private final RateLimiter limiter = new RateLimiter(new SimpleMeterRegistry(), 1000);
+
+    @AfterEach
+    void shutdown() {
+        limiter.shutdown();
+    }
+
+    @Test
+    void allowsTheBurstThenRefusesUntilTheNextInterval() {
+        for (int i = 0; i < 3; i++) assertThat(limiter.acquire("ip:1", TIER)).isZero();
+
+        long wait = limiter.acquire("ip:1", TIER);
+
+        assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+        // A refused request takes nothing, so the wait does not grow with retries
+        assertThat(limiter.acquire("ip:1", TIER)).isLessThanOrEqualTo(wait);
+    }
+
+    @Test
+    void keysAreLimitedIndependently() {
+        for (int i = 0; i < 3; i++) limiter.acquire("ip:1", TIER);
+
+        assertThat(limiter.acquire("ip:1", TIER)).isPositive();
+        assertThat(limiter.acquire("ip:2", TIER)).isZero();
+    }
+
+    @Test
+    void releaseGivesTheTokenBack() {
+        for (int i = 0; i < 3; i++) limiter.acquire("ip:1", TIER);
+
+        limiter.release("ip:1", TIER);
+
+        assertThat(limiter.acquire("ip:1", TIER)).isZero();
+        assertThat(limiter.acquire("ip:1", TIER)).isPositive();
+    }
+
+    @Test
+    void keySpaceStaysBounded() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RateLimiter small = new RateLimiter(registry, 4);
+        try {
+            for (int i = 0; i < 100; i++) assertThat(small.acquire("ip:" + i, TIER)).isZero();
+
+            assertThat(registry.get("bank.ratelimit.keys").gauge().value()).isLessThanOrEqualTo(4);
+            assertThat(registry.get("bank.ratelimit.evicted").counter().count()).isGreaterThanOrEqualTo(96);
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    @Test
+    void retryAfterRoundsUpToWholeSeconds() {
+        assertThat(RateLimiter.retryAfterSeconds(1)).isEqualTo(1);
+        assertThat(RateLimiter.retryAfterSeconds(TimeUnit.SECONDS.toNanos(1))).isEqualTo(1);
+        assertThat(RateLimiter.retryAfterSeconds(TimeUnit.SECONDS.toNanos(1) + 1)).isEqualTo(2);
+        assertThat(RateLimiter.retryAfterSeconds(TimeUnit.MILLISECONDS.toNanos(59_500))).isEqualTo(60);
+    }
+}
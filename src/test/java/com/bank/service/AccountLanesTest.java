@@ -0,0 +1,173 @@
+package com.bank.service;
+
+import com.bank.entity.Transaction;
+import com.bank.entity.User;
+import com.bank.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AccountLanesTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final TransactionService transactionService = mock(TransactionService.class);
+    private final AccountLanes lanes = new AccountLanes(mongoTemplate, transactionService, new SimpleMeterRegistry(), 1, 100, 256);
+    // Balances as the mocked database holds them, in minor units
+    private final Map<String, Long> balances = new ConcurrentHashMap<>();
+    // The balance >= guard of the last conditional write, null if it had none
+    private volatile Long lastGuard;
+
+    @AfterEach
+    void shutdown() {
+        lanes.shutdown();
+    }
+
+    @Test
+    void queuedPostingsAreCoalescedIntoOneWritePerAccount() throws Exception {
+        balances.put("alice", 100_00L);
+        balances.put("bob", 5_00L);
+        stubBalances();
+        Transaction first = new Transaction();
+        Transaction second = new Transaction();
+
+        CountDownLatch release = holdLane("alice");
+        CompletableFuture<Money> a1 = lanes.post("alice", Money.parse("-30"), true, first);
+        CompletableFuture<Money> a2 = lanes.post("alice", Money.parse("-50"), true, second);
+        CompletableFuture<Money> b1 = lanes.post("bob", Money.parse("10"), false, null);
+        release.countDown();
+
+        assertThat(a1.get(5, TimeUnit.SECONDS)).isEqualTo(Money.parse("70"));
+        assertThat(a2.get(5, TimeUnit.SECONDS)).isEqualTo(Money.parse("20"));
+        assertThat(b1.get(5, TimeUnit.SECONDS)).isEqualTo(Money.parse("15"));
+        // One read of both balances, one net $inc per account
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(User.class));
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(User.class));
+        assertThat(first.getBalanceAfter()).isEqualTo(Money.parse("70"));
+        assertThat(second.getBalanceAfter()).isEqualTo(Money.parse("20"));
+        assertThat(first.getTimestamp()).isNotNull();
+        verify(transactionService).recordAll(List.of(first, second));
+    }
+
+    @Test
+    void overdraftInABatchIsRefusedWithoutFailingTheOthers() throws Exception {
+        balances.put("alice", 100_00L);
+        stubBalances();
+
+        CountDownLatch release = holdLane("alice");
+        CompletableFuture<Money> a1 = lanes.post("alice", Money.parse("-60"), true, null);
+        CompletableFuture<Money> a2 = lanes.post("alice", Money.parse("-60"), true, null);
+        CompletableFuture<Money> a3 = lanes.post("alice", Money.parse("-40"), true, null);
+        release.countDown();
+
+        assertThat(a1.get(5, TimeUnit.SECONDS)).isEqualTo(Money.parse("40"));
+        assertThatThrownBy(() -> AccountLanes.await(a2)).isInstanceOf(InsufficientFundsException.class);
+        assertThat(a3.get(5, TimeUnit.SECONDS)).isEqualTo(Money.ZERO);
+        assertThat(balances.get("alice")).isZero();
+    }
+
+    @Test
+    void coalescedWriteCarriesTheServerSideGuardOnTheLowestPoint() throws Exception {
+        balances.put("alice", 100_00L);
+        stubBalances();
+
+        CountDownLatch release = holdLane("alice");
+        CompletableFuture<Money> debit = lanes.post("alice", Money.parse("-80"), true, null);
+        CompletableFuture<Money> credit = lanes.post("alice", Money.parse("50"), false, null);
+        release.countDown();
+
+        assertThat(AccountLanes.await(debit)).isEqualTo(Money.parse("20"));
+        assertThat(AccountLanes.await(credit)).isEqualTo(Money.parse("70"));
+        // The net -30 only applies while the balance still covers the -80 reached on the way
+        verify(mongoTemplate).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(User.class));
+        assertThat(lastGuard).isEqualTo(80_00L);
+    }
+
+    @Test
+    void uncoveredDebitOfAnExistingUserIsAnOverdraft() {
+        balances.put("alice", 10_00L);
+        stubBalances();
+        when(mongoTemplate.exists(any(Query.class), eq(User.class))).thenReturn(true);
+
+        assertThatThrownBy(() -> AccountLanes.await(lanes.post("alice", Money.parse("-20"), true, null)))
+                .isInstanceOf(InsufficientFundsException.class);
+        assertThat(balances.get("alice")).isEqualTo(10_00L);
+    }
+
+    @Test
+    void postingsToUnknownUsersCompleteWithNull() {
+        stubBalances();
+
+        assertThat(AccountLanes.await(lanes.post("nobody", Money.parse("5"), false, null))).isNull();
+        verify(transactionService, never()).record(any());
+    }
+
+    // Parks the lane on a barrier so that postings queue up behind it and are drained as one batch
+    private CountDownLatch holdLane(String userId) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        lanes.execute(userId, () -> {
+            started.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        return release;
+    }
+
+    // A findAndModify that honours the _id and balance >= guard criteria the lanes send
+    private void stubBalances() {
+        when(mongoTemplate.find(any(Query.class), eq(User.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            @SuppressWarnings("unchecked")
+            Collection<String> ids = (Collection<String>) query.getQueryObject().get("_id", Document.class).get("$in");
+            return ids.stream().filter(balances::containsKey).map(id -> user(id, balances.get(id))).toList();
+        });
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(User.class)))
+                .thenAnswer(invocation -> {
+                    Document criteria = invocation.<Query>getArgument(0).getQueryObject();
+                    Document inc = invocation.<Update>getArgument(1).getUpdateObject().get("$inc", Document.class);
+                    String id = criteria.getString("_id");
+                    Long balance = balances.get(id);
+                    if (balance == null) return null;
+                    Document guard = criteria.get("balance", Document.class);
+                    lastGuard = guard != null ? ((Number) guard.get("$gte")).longValue() : null;
+                    if (lastGuard != null && balance < lastGuard) return null;
+                    long after = balance + ((Number) inc.get("balance")).longValue();
+                    balances.put(id, after);
+                    return user(id, after);
+                });
+    }
+
+    private static User user(String id, long balance) {
+        User user = new User();
+        user.setId(id);
+        user.setBalance(Money.ofMinor(balance));
+        return user;
+    }
+}
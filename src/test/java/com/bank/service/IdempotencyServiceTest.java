@@ -0,0 +1,186 @@
+package com.bank.service;
+
+import com.bank.entity.IdempotencyRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.ResponseEntity;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceTest {
+
+    private static final Map<String, Object> REQUEST = Map.of("toUserId", "bob", "amount", "10.00");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private IdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(mongoTemplate.remove(any(Query.class), eq(IdempotencyRecord.class))).thenReturn(DeleteResult.acknowledged(1));
+        service = new IdempotencyService(mongoTemplate, objectMapper, registry, 100, Duration.ofHours(24), Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void repeatedKeyIsReplayedWithoutRunningTheActionAgain() {
+        AtomicInteger runs = new AtomicInteger();
+
+        ResponseEntity<?> first = service.execute("key-1", "alice", "transfer", REQUEST, () -> created(runs));
+        ResponseEntity<?> second = service.execute("key-1", "alice", "transfer", REQUEST, () -> created(runs));
+
+        assertThat(runs).hasValue(1);
+        assertThat(first.getStatusCode().value()).isEqualTo(201);
+        assertThat(second.getStatusCode().value()).isEqualTo(201);
+        assertThat(second.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+        assertThat(second.getBody()).isEqualTo("{\"id\":\"tx-1\"}");
+    }
+
+    @Test
+    void keysAreScopedToTheCallerAndRoute() {
+        AtomicInteger runs = new AtomicInteger();
+
+        service.execute("key-1", "alice", "transfer", REQUEST, () -> created(runs));
+        service.execute("key-1", "bob", "transfer", REQUEST, () -> created(runs));
+        service.execute("key-1", "alice", "deposit", REQUEST, () -> created(runs));
+
+        assertThat(runs).hasValue(3);
+    }
+
+    @Test
+    void reusingAKeyForADifferentRequestIsAConflict() {
+        AtomicInteger runs = new AtomicInteger();
+        service.execute("key-1", "alice", "transfer", REQUEST, () -> created(runs));
+
+        ResponseEntity<?> reused = service.execute("key-1", "alice", "transfer", Map.of("toUserId", "mallory"), () -> created(runs));
+
+        assertThat(reused.getStatusCode().value()).isEqualTo(422);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void keyCompletedOnAnotherNodeIsReplayedFromMongo() throws Exception {
+        doThrow(new DuplicateKeyException("dup")).when(mongoTemplate).insert(any(IdempotencyRecord.class));
+        when(mongoTemplate.findById("alice:transfer:key-1", IdempotencyRecord.class))
+                .thenReturn(finished(fingerprint(REQUEST), 201, "{\"id\":\"tx-9\"}"));
+        AtomicInteger runs = new AtomicInteger();
+
+        ResponseEntity<?> response = service.execute("key-1", "alice", "transfer", REQUEST, () -> created(runs));
+
+        assertThat(runs).hasValue(0);
+        assertThat(response.getStatusCode().value()).isEqualTo(201);
+        assertThat(response.getBody()).isEqualTo("{\"id\":\"tx-9\"}");
+        assertThat(response.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+    }
+
+    @Test
+    void keyUsedOnAnotherNodeForADifferentRequestIsAConflict() throws Exception {
+        doThrow(new DuplicateKeyException("dup")).when(mongoTemplate).insert(any(IdempotencyRecord.class));
+        when(mongoTemplate.findById("alice:transfer:key-1", IdempotencyRecord.class))
+                .thenReturn(finished(fingerprint(Map.of("toUserId", "mallory")), 201, "{}"));
+        AtomicInteger runs = new AtomicInteger();
+
+        ResponseEntity<?> response = service.execute("key-1", "alice", "transfer", REQUEST, () -> created(runs));
+
+        assertThat(response.getStatusCode().value()).isEqualTo(422);
+        assertThat(runs).hasValue(0);
+    }
+
+    @Test
+    void claimWhoseLeaseRanOutIsTakenOver() throws Exception {
+        doThrow(new DuplicateKeyException("dup")).when(mongoTemplate).insert(any(IdempotencyRecord.class));
+        IdempotencyRecord abandoned = new IdempotencyRecord();
+        abandoned.setId("alice:transfer:key-1");
+        abandoned.setFingerprint(fingerprint(REQUEST));
+        abandoned.setLeaseUntil(Instant.now().minusSeconds(1));
+        when(mongoTemplate.findById("alice:transfer:key-1", IdempotencyRecord.class)).thenReturn(abandoned);
+        AtomicInteger runs = new AtomicInteger();
+
+        ResponseEntity<?> response = service.execute("key-1", "alice", "transfer", REQUEST, () -> created(runs));
+
+        assertThat(runs).hasValue(1);
+        assertThat(response.getHeaders().containsKey("Idempotent-Replayed")).isFalse();
+    }
+
+    @Test
+    void failedRequestReleasesTheKeySoItCanBeRetried() {
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThatThrownBy(() -> service.execute("key-1", "alice", "transfer", REQUEST, () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("lane saturated");
+        })).isInstanceOf(IllegalStateException.class);
+        verify(mongoTemplate).remove(any(Query.class), eq(IdempotencyRecord.class));
+
+        ResponseEntity<?> retried = service.execute("key-1", "alice", "transfer", REQUEST, () -> created(runs));
+
+        assertThat(runs).hasValue(2);
+        assertThat(retried.getStatusCode().value()).isEqualTo(201);
+    }
+
+    @Test
+    void keyReleasedByItsClaimantIsAConflictForTheWaiter() {
+        doThrow(new DuplicateKeyException("dup")).when(mongoTemplate).insert(any(IdempotencyRecord.class));
+
+        assertThatThrownBy(() -> service.execute("key-1", "alice", "transfer", REQUEST, () -> created(new AtomicInteger())))
+                .isInstanceOf(IdempotencyConflictException.class);
+    }
+
+    @Test
+    void withoutAKeyTheActionAlwaysRuns() {
+        AtomicInteger runs = new AtomicInteger();
+
+        service.execute(null, "alice", "transfer", REQUEST, () -> created(runs));
+        service.execute(" ", "alice", "transfer", REQUEST, () -> created(runs));
+
+        assertThat(runs).hasValue(2);
+    }
+
+    private static ResponseEntity<?> created(AtomicInteger runs) {
+        runs.incrementAndGet();
+        return ResponseEntity.status(201).body(Map.of("id", "tx-1"));
+    }
+
+    private static IdempotencyRecord finished(String fingerprint, int status, String body) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setId("alice:transfer:key-1");
+        record.setFingerprint(fingerprint);
+        record.setStatus(status);
+        record.setBody(body);
+        return record;
+    }
+
+    private String fingerprint(Object request) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request)));
+    }
+}
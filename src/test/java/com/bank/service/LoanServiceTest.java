@@ -0,0 +1,126 @@
+package com.bank.service;
+
+import com.bank.entity.Loan;
+import com.bank.event.AccountEventBus;
+import com.bank.loan.AmortizationEngine;
+import com.bank.loan.LoanPortfolioStats;
+import com.bank.loan.LoanStatus;
+import com.bank.loan.LoanType;
+import com.bank.money.Money;
+import com.bank.repository.LoanRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class LoanServiceTest {
+
+    private final LoanRepository loanRepository = mock(LoanRepository.class);
+    private final AccountLanes lanes = mock(AccountLanes.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final LoanPortfolioStats stats = mock(LoanPortfolioStats.class);
+    private final LoanService service = new LoanService(loanRepository, mock(UserService.class), lanes,
+            mock(TransactionService.class), mongoTemplate, new AmortizationEngine(new SimpleMeterRegistry(), 100),
+            mock(MongoTransactions.class), mock(AccountEventBus.class), stats, 5000, 4);
+    private Loan pending;
+
+    @BeforeEach
+    void setUp() {
+        pending = new Loan("alice", null, LoanType.GOLD, Money.parse("1000.00"), 12, BigDecimal.valueOf(12.0), "tractor");
+        pending.setId("loan-1");
+        pending.setVersion(3L);
+        when(loanRepository.findById("loan-1")).thenReturn(Optional.of(pending));
+    }
+
+    @Test
+    void rejectionMovesThePendingLoanAtTheVersionItWasDecidedOn() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Loan.class)))
+                .thenReturn(moved(LoanStatus.REJECTED, 4L));
+
+        Loan rejected = service.rejectLoan("loan-1", "admin", "no collateral", null);
+
+        assertThat(rejected.getStatus()).isEqualTo(LoanStatus.REJECTED);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class), eq(Loan.class));
+        assertThat(query.getValue().getQueryObject())
+                .containsEntry("_id", "loan-1")
+                .containsEntry("status", LoanStatus.PENDING)
+                .containsEntry("version", 3L);
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class)).containsEntry("status", LoanStatus.REJECTED);
+        assertThat(update.getValue().getUpdateObject().get("$inc", Document.class)).containsEntry("version", 1L);
+        verify(stats).moved(rejected, LoanStatus.PENDING, LoanStatus.REJECTED);
+    }
+
+    @Test
+    void staleVersionIsAConflictAndChangesNothing() {
+        // Someone else moved the loan since version 2 was read
+        assertThatThrownBy(() -> service.rejectLoan("loan-1", "admin", "late", 2L))
+                .isInstanceOf(LoanTransitionException.class)
+                .hasMessageContaining("changed by someone else");
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(query.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(Loan.class));
+        assertThat(query.getValue().getQueryObject()).containsEntry("version", 2L);
+        verifyNoInteractions(stats);
+    }
+
+    @Test
+    void approvalThatLosesTheRaceMovesNoMoney() {
+        assertThatThrownBy(() -> service.approveLoan("loan-1", "admin", "ok", null))
+                .isInstanceOf(LoanTransitionException.class);
+
+        verify(lanes, never()).execute(anyString(), any());
+        verify(stats, never()).moved(any(), any(), any());
+    }
+
+    @Test
+    void approvalDisbursesAndCreditsInTheApplicantsLane() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Loan.class)))
+                .thenReturn(moved(LoanStatus.APPROVED, 4L), moved(LoanStatus.DISBURSED, 5L));
+        when(lanes.execute(eq("alice"), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        Loan disbursed = service.approveLoan("loan-1", "admin", "ok", null);
+
+        assertThat(disbursed.getStatus()).isEqualTo(LoanStatus.DISBURSED);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2))
+                .findAndModify(query.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(Loan.class));
+        List<Query> transitions = query.getAllValues();
+        assertThat(transitions.get(0).getQueryObject()).containsEntry("status", LoanStatus.PENDING).containsEntry("version", 3L);
+        // The second step is pinned to the version the first one produced
+        assertThat(transitions.get(1).getQueryObject()).containsEntry("status", LoanStatus.APPROVED).containsEntry("version", 4L);
+        verify(lanes).execute(eq("alice"), any());
+        verify(stats).moved(disbursed, LoanStatus.PENDING, LoanStatus.DISBURSED);
+    }
+
+    private Loan moved(LoanStatus status, long version) {
+        Loan loan = new Loan("alice", null, LoanType.GOLD, Money.parse("1000.00"), 12, BigDecimal.valueOf(12.0), "tractor");
+        loan.setId("loan-1");
+        loan.setStatus(status);
+        loan.setVersion(version);
+        return loan;
+    }
+}
@@ -0,0 +1,91 @@
+package com.bank.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class JwtUtilsTest {
+
+    private static final String KEY_1 = "k1:" + Base64.getEncoder().encodeToString(new byte[32]);
+    private static final String KEY_2 = "k2:" + Base64.getEncoder().encodeToString("another-32-byte-signing-secret!!".getBytes(StandardCharsets.US_ASCII));
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void issuedTokensVerify() {
+        JwtUtils jwt = jwt(KEY_1, Duration.ofHours(1));
+
+        JwtUtils.TokenRecord record = jwt.validate(jwt.issueToken("user-1", "ADMIN"));
+
+        assertThat(record).isEqualTo(new JwtUtils.TokenRecord("user-1", "ADMIN"));
+    }
+
+    @Test
+    void tamperedOrForeignTokensDoNot() {
+        JwtUtils jwt = jwt(KEY_1, Duration.ofHours(1));
+        String token = jwt.issueToken("user-1", "CUSTOMER");
+        String[] parts = token.split("\\.");
+        String claims = new String(Base64.getUrlDecoder().decode(parts[1])).replace("CUSTOMER", "ADMIN");
+        String forged = parts[0] + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(claims.getBytes()) + "." + parts[2];
+
+        assertThat(jwt.validate(forged)).isNull();
+        assertThat(jwt.validate(token.substring(0, token.length() - 2))).isNull();
+        assertThat(jwt.validate(jwt(KEY_2, Duration.ofHours(1)).issueToken("user-1", "ADMIN"))).isNull();
+        assertThat(jwt.validate("not-a-token")).isNull();
+        assertThat(jwt.validate(null)).isNull();
+    }
+
+    @Test
+    void rotatedKeysKeepVerifyingOldTokens() {
+        String oldToken = jwt(KEY_1, Duration.ofHours(1)).issueToken("user-1", "CUSTOMER");
+
+        JwtUtils rotated = jwt(KEY_2 + "," + KEY_1, Duration.ofHours(1));
+
+        assertThat(rotated.validate(oldToken)).isNotNull();
+        assertThat(jwt(KEY_1, Duration.ofHours(1)).validate(rotated.issueToken("user-2", "CUSTOMER"))).isNull();
+    }
+
+    @Test
+    void expiredTokensDoNotVerify() {
+        JwtUtils jwt = jwt(KEY_1, Duration.ZERO);
+
+        assertThat(jwt.validate(jwt.issueToken("user-1", "CUSTOMER"))).isNull();
+    }
+
+    @Test
+    void cachedTokensExpireWithTheToken() {
+        JwtUtils jwt = jwt(KEY_1, Duration.ofSeconds(2), registry);
+        String token = jwt.issueToken("user-1", "CUSTOMER");
+
+        assertThat(jwt.validate(token)).isNotNull();
+        assertThat(jwt.validate(token)).isNotNull();
+        assertThat(registry.get("bank.tokens.cache").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(registry.get("bank.tokens.cache.size").gauge().value()).isEqualTo(1);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> jwt.validate(token) == null);
+        assertThat(registry.get("bank.tokens.cache.size").gauge().value()).isZero();
+    }
+
+    @Test
+    void cacheIsBounded() {
+        JwtUtils jwt = jwt(KEY_1, Duration.ofHours(1), registry);
+        for (int i = 0; i < 20; i++) jwt.validate(jwt.issueToken("user-" + i, "CUSTOMER"));
+
+        assertThat(registry.get("bank.tokens.cache.size").gauge().value()).isEqualTo(8);
+    }
+
+    private static JwtUtils jwt(String keys, Duration ttl) {
+        return jwt(keys, ttl, new SimpleMeterRegistry());
+    }
+
+    private static JwtUtils jwt(String keys, Duration ttl, SimpleMeterRegistry registry) {
+        return new JwtUtils(new ObjectMapper(), registry, keys, ttl, 8);
+    }
+}